@@ -0,0 +1,74 @@
+import com.lang.elox.core.compiling.VM;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.interpreting.Resolver;
+import com.lang.elox.core.jit.Jit;
+import com.lang.elox.core.nodes.NodeInterpreter;
+import com.lang.elox.core.optimizing.Optimizer;
+import com.lang.elox.core.parsing.Parser;
+import com.lang.elox.core.scanning.Scanner;
+import com.lang.elox.representation.parsetime.Stmt;
+import com.lang.elox.utils.ErrorReporter;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+// Runs each script repeatedly in one JVM on a fresh interpreter and prints
+// the median and minimum time of the timed runs, leaving out JVM startup,
+// parsing and the warm-up runs. The script's own output is discarded.
+//
+// usage: java -cp <classes> bench/Steady.java <ast|vm|nodes|jit> <warm-up runs> <timed runs> <script>...
+
+public final class Steady {
+  public static void main(String[] args) throws Exception {
+    String engine = args[0];
+    int warmUp = Integer.parseInt(args[1]);
+    int runs = Integer.parseInt(args[2]);
+    PrintStream out = System.out;
+
+    for (int i = 3; i < args.length; i++) {
+      String source = new String(Files.readAllBytes(Paths.get(args[i])));
+      long[] times = new long[runs];
+      System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+      for (int run = 0; run < warmUp + runs; run++) {
+        long time = run(engine, args[i], source);
+        if (run >= warmUp) times[run - warmUp] = time;
+      }
+      System.setOut(out);
+
+      Arrays.sort(times);
+      out.printf("%-6s %-24s median %8.1f ms   min %8.1f ms%n",
+          engine, args[i], times[runs / 2] / 1e6, times[0] / 1e6);
+    }
+  }
+
+  private static long run(String engine, String filename, String source) {
+    ErrorReporter reporter = new ErrorReporter();
+    Interpreter interpreter = new Interpreter(reporter);
+    if (engine.equals("jit")) interpreter.enableJit(Jit.DEFAULT_CALL_THRESHOLD, Jit.DEFAULT_LOOP_THRESHOLD);
+    Parser.getValidator().setFile(filename);
+    List<Stmt> statements = new Parser(new Scanner(source, reporter).scanTokens(), reporter).parse();
+    new Resolver(interpreter, reporter).resolve(statements);
+    new Optimizer().optimize(statements);
+
+    long start = System.nanoTime();
+    switch (engine) {
+      case "vm":
+        new VM(interpreter, reporter).interpret(statements);
+        break;
+      case "nodes":
+        new NodeInterpreter(interpreter, reporter).interpret(statements);
+        break;
+      default:
+        interpreter.interpret(statements, filename);
+    }
+    long time = System.nanoTime() - start;
+
+    Parser.getValidator().clear();
+    if (reporter.hadError || reporter.hadRuntimeError) throw new IllegalStateException(filename + " failed.");
+    return time;
+  }
+}
@@ -0,0 +1,33 @@
+#!/usr/bin/env bash
+# Times every script under bench/ on each engine and prints the median
+# wall-clock time of several runs in milliseconds, JVM startup included.
+# Builds src into a temporary directory.
+#
+# usage: bench/run.sh [runs]
+
+cd "$(dirname "$0")" || exit 1
+classes=$(mktemp -d)
+trap 'rm -rf "$classes"' EXIT
+javac -nowarn -d "$classes" $(find ../src -name '*.java') || exit 1
+
+runs=${1:-5}
+configs=("" "--engine=vm" "--engine=nodes" "--jit")
+
+printf '%-14s' script
+for config in "${configs[@]}"; do printf '%16s' "${config:-ast}"; done
+echo
+
+for script in *.elox; do
+  printf '%-14s' "$script"
+  for config in "${configs[@]}"; do
+    times=()
+    for ((i = 0; i < runs; i++)); do
+      start=$(date +%s%N)
+      java -cp "$classes" com.lang.elox.Elox $config "$script" > /dev/null || exit 1
+      times+=($(( ($(date +%s%N) - start) / 1000000 )))
+    done
+    median=$(printf '%s\n' "${times[@]}" | sort -n | sed -n "$((runs / 2 + 1))p")
+    printf '%16s' "$median ms"
+  done
+  echo
+done
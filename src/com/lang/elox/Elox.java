@@ -1,7 +1,12 @@
 package com.lang.elox;
 
+import com.lang.elox.core.compiling.VM;
 import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.jit.Jit;
 import com.lang.elox.core.interpreting.Resolver;
+import com.lang.elox.core.interpreting.Verifier;
+import com.lang.elox.core.nodes.NodeInterpreter;
+import com.lang.elox.core.optimizing.Optimizer;
 import com.lang.elox.core.parsing.Parser;
 import com.lang.elox.core.scanning.Scanner;
 import com.lang.elox.core.scanning.Token;
@@ -19,21 +24,88 @@ import java.util.List;
 public final class Elox {
   private static final ErrorReporter reporter = new ErrorReporter();
   private static final Interpreter interpreter = new Interpreter(reporter);
+  private static final VM vm = new VM(interpreter, reporter);
+  private static final NodeInterpreter nodes = new NodeInterpreter(interpreter, reporter);
+  private static final Optimizer optimizer = new Optimizer();
+  private static String engine = "ast";
+  private static boolean jit = false;
+  private static boolean tierStats = false;
+  private static boolean optimize = true;
+  private static boolean optStats = false;
+  private static boolean verify = false;
+  private static boolean maxDepth = false;
+  private static int callThreshold = Jit.DEFAULT_CALL_THRESHOLD;
+  private static int loopThreshold = Jit.DEFAULT_LOOP_THRESHOLD;
 
   public static void main(String[] args) throws IOException {
-    if (args.length > 1) {
-      System.out.println("Usage : ./elox [script] ");
-      System.exit(64);
-    } else if (args.length == 1) {
-      runFile(args[0]);
+    String script = null;
+    for (String arg : args) {
+      if (arg.startsWith("--engine=")) {
+        engine = arg.substring("--engine=".length());
+        if (!engine.equals("ast") && !engine.equals("vm") && !engine.equals("nodes")) usage();
+      } else if (arg.startsWith("--max-depth=")) {
+        vm.setMaxDepth(threshold(arg));
+        maxDepth = true;
+      } else if (arg.equals("--jit")) {
+        jit = true;
+      } else if (arg.startsWith("--jit-call-threshold=")) {
+        jit = true;
+        callThreshold = threshold(arg);
+      } else if (arg.startsWith("--jit-loop-threshold=")) {
+        jit = true;
+        loopThreshold = threshold(arg);
+      } else if (arg.equals("--tier-stats")) {
+        jit = true;
+        tierStats = true;
+      } else if (arg.equals("-O0") || arg.equals("-O1")) {
+        optimize = arg.equals("-O1");
+      } else if (arg.equals("--opt-stats")) {
+        optStats = true;
+      } else if (arg.equals("--verify-resolution")) {
+        verify = true;
+      } else if (script == null && !arg.startsWith("-")) {
+        script = arg;
+      } else {
+        usage();
+      }
+    }
+
+    // the JIT compiles the tree-walking interpreter's functions and loops,
+    // only the VM counts its calls
+    if (jit && !engine.equals("ast")) usage();
+    if (maxDepth && !engine.equals("vm")) usage();
+    if (jit) interpreter.enableJit(callThreshold, loopThreshold);
+
+    if (script != null) {
+      runFile(script);
     } else {
       runPrompt();
     }
   }
 
+  private static void usage() {
+    System.out.println("Usage : ./elox [--engine=ast|vm|nodes] [--max-depth=n] [--jit] [--jit-call-threshold=n] " +
+        "[--jit-loop-threshold=n] [--tier-stats] [-O0|-O1] [--opt-stats] [--verify-resolution] [script] ");
+    System.exit(64);
+  }
+
+  private static int threshold(String arg) {
+    try {
+      int value = Integer.parseInt(arg.substring(arg.indexOf('=') + 1));
+      if (value > 0) return value;
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+
+    usage();
+    return 0;
+  }
+
   private static void runFile(String path) throws IOException {
     byte[] bytes = Files.readAllBytes(Paths.get(path));
     run(new String(bytes, Charset.defaultCharset()), path);
+    if (tierStats) interpreter.getJit().report(System.err);
+    if (optStats) System.err.println("Optimizer: removed " + optimizer.removed() + " node(s).");
 
     if (reporter.hadError) System.exit(65);
     if (reporter.hadRuntimeError) System.exit(70);
@@ -65,9 +137,21 @@ public final class Elox {
 
     Resolver resolver = new Resolver(interpreter, reporter);
     resolver.resolve(statements);
+    if (verify) new Verifier(reporter).verify(statements);
 
     if (reporter.hadError) return;
 
-    interpreter.interpret(statements, filename);
+    if (optimize) optimizer.optimize(statements);
+
+    switch (engine) {
+      case "vm":
+        vm.interpret(statements);
+        break;
+      case "nodes":
+        nodes.interpret(statements);
+        break;
+      default:
+        interpreter.interpret(statements, filename);
+    }
   }
 }
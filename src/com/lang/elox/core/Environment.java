@@ -3,47 +3,125 @@ package com.lang.elox.core;
 import com.lang.elox.core.scanning.Token;
 import com.lang.elox.errors.RuntimeError;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+// Global environments keep one cell per name, local frames are fixed-size
+// arrays indexed by the slots assigned in Resolver. A slot holding a
+// variable closures capture and assign keeps it in a cell, which the frame
+// shares with the closures. The upvalues of a function call's frame are the
+// variables its closure captured, the blocks inside the call share them.
+
 public final class Environment {
-  final Environment enclosing;
-  private final Map<String, Object> values = new HashMap<>();
+  private static final Object UNDEFINED = new Object();
+
+  public static final class Cell {
+    private Object value = UNDEFINED;
+
+    private Cell() {}
+
+    // a boxed local of the VM, which keeps its frames on its own stack
+    public Cell(Object value) {
+      this.value = value;
+    }
+
+    public Object get() {
+      return value;
+    }
+
+    public void set(Object value) {
+      this.value = value;
+    }
+  }
+
+  Environment enclosing;
+  private final Map<String, Cell> cells;
+  private final Object[] slots;
+  private Object[] upvalues;
+  // declarations of the closures made in this frame, each followed by the
+  // closure, see TLambda.of
+  private Object[] closures;
+  private int closureCount;
 
   public Environment() {
-    enclosing = null;
+    this.enclosing = null;
+    this.cells = new HashMap<>();
+    this.slots = null;
   }
 
-  public Environment(Environment enclosing) {
+  public Environment(Environment enclosing, int size) {
     this.enclosing = enclosing;
+    this.cells = null;
+    this.slots = new Object[size];
+    if (enclosing != null) this.upvalues = enclosing.upvalues;
   }
 
-  public Object get(Token name) {
-    if (values.containsKey(name.lexeme)) {
-      return values.get(name.lexeme);
+  // cells are created undefined on first lookup, so a use site can cache
+  // its cell before the variable is declared
+  public Cell cell(String name) {
+    Cell cell = cells.get(name);
+    if (cell == null) {
+      cell = new Cell();
+      cells.put(name, cell);
     }
+    return cell;
+  }
 
-    if (enclosing != null) return enclosing.get(name);
-
-    throw new RuntimeError(name,"Undefined variable '" + name.lexeme + "'.");
+  public Object get(Cell cell, Token name) {
+    Object value = cell.value;
+    if (value == UNDEFINED) {
+      throw new RuntimeError(name,"Undefined variable '" + name.lexeme + "'.");
+    }
+    return value;
   }
 
-  public void assign(Token name, Object value) {
-    if (values.containsKey(name.lexeme)) {
-      values.put(name.lexeme, value);
-      return;
+  public void assign(Cell cell, Token name, Object value) {
+    if (cell.value == UNDEFINED) {
+      throw new RuntimeError(name,"Undefined variable '" + name.lexeme + "'.");
     }
+    cell.value = value;
+  }
+
+  public void define(String name, Object value) {
+    cell(name).value = value;
+  }
+
+  public void define(Cell cell, Object value) {
+    cell.value = value;
+  }
+
+  public void define(int slot, Object value) {
+    slots[slot] = value;
+  }
+
+  public void defineBoxed(int slot, Object value) {
+    ((Cell) slots[slot]).value = value;
+  }
 
-    if (enclosing != null) {
-      enclosing.assign(name, value);
-      return;
+  // puts the given slots into cells, keeping their values
+  public void box(int[] boxed) {
+    for (int slot : boxed) {
+      slots[slot] = new Cell(slots[slot]);
     }
+  }
 
-    throw new RuntimeError(name,"Undefined variable '" + name.lexeme + "'.");
+  // used by FrameStack to hand the frame to another call
+  void reset(Object[] upvalues) {
+    this.enclosing = null;
+    this.upvalues = upvalues;
   }
 
-  public void define(String name, Object value) {
-    values.put(name, value);
+  void clear() {
+    Arrays.fill(slots, null);
+    if (closureCount != 0) {
+      Arrays.fill(closures, 0, closureCount, null);
+      closureCount = 0;
+    }
+  }
+
+  int capacity() {
+    return slots.length;
   }
 
   public Environment ancestor(int distance) {
@@ -58,15 +136,71 @@ public final class Environment {
     return enclosing;
   }
 
-  public Object getAt(int distance, String name) {
-    return ancestor(distance).values.get(name);
+  public Object getAt(int distance, int slot) {
+    return ancestor(distance).slots[slot];
+  }
+
+  public void assignAt(int distance, int slot, Object value) {
+    ancestor(distance).slots[slot] = value;
+  }
+
+  public Object getBoxedAt(int distance, int slot) {
+    return ((Cell) ancestor(distance).slots[slot]).value;
+  }
+
+  public void assignBoxedAt(int distance, int slot, Object value) {
+    ((Cell) ancestor(distance).slots[slot]).value = value;
+  }
+
+  // the value of a slot of this frame, boxed or not
+  public Object valueAt(int slot) {
+    Object value = slots[slot];
+    return value instanceof Cell ? ((Cell) value).value : value;
+  }
+
+  public Object getUpvalue(int index) {
+    return upvalues[index];
   }
 
-  public void assignAt(int distance, Token name, Object value) {
-    ancestor(distance).values.put(name.lexeme, value);
+  public Object getBoxedUpvalue(int index) {
+    return ((Cell) upvalues[index]).value;
   }
 
-  public Map<String, Object> getValues() {
+  public void assignBoxedUpvalue(int index, Object value) {
+    ((Cell) upvalues[index]).value = value;
+  }
+
+  // The upvalues of a closure created in this frame: a slot depths[i] frames
+  // out, or an upvalue of this frame's function when depths[i] is -1. Boxed
+  // slots give their cell.
+  public Object[] capture(int[] depths, int[] slots) {
+    if (depths == null) return null;
+    Object[] values = new Object[depths.length];
+    for (int i = 0; i < depths.length; i++) {
+      values[i] = depths[i] == -1 ? upvalues[slots[i]] : ancestor(depths[i]).slots[slots[i]];
+    }
     return values;
   }
+
+  // The closure of declaration made earlier in this frame, or null. What a
+  // closure captures doesn't change while the frame it is made in is in
+  // use: blocks get a new frame on each entry, a call's frame is cleared
+  // when the call returns, and captured variables that are assigned are
+  // shared through cells the frame keeps.
+  public Object closure(Object declaration) {
+    for (int i = 0; i < closureCount; i += 2) {
+      if (closures[i] == declaration) return closures[i + 1];
+    }
+    return null;
+  }
+
+  public void cacheClosure(Object declaration, Object closure) {
+    if (closures == null) {
+      closures = new Object[4];
+    } else if (closureCount == closures.length) {
+      closures = Arrays.copyOf(closures, closureCount * 2);
+    }
+    closures[closureCount++] = declaration;
+    closures[closureCount++] = closure;
+  }
 }
@@ -0,0 +1,30 @@
+package com.lang.elox.core;
+
+import java.util.Arrays;
+
+// Frames for calls of interpreted functions. Closures capture variables
+// rather than frames, so no frame outlives its call. Calls nest, so a call
+// takes the frame kept for its depth and hands it back on return; the next
+// call reaching that depth reuses it instead of allocating a new one.
+
+public final class FrameStack {
+  private Environment[] frames = new Environment[64];
+  private int depth = 0;
+
+  public Environment push(Object[] upvalues, int size) {
+    if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+
+    Environment frame = frames[depth];
+    if (frame == null || frame.capacity() < size) {
+      frame = frames[depth] = new Environment(null, size);
+    }
+    frame.reset(upvalues);
+    depth++;
+    return frame;
+  }
+
+  // clears the frame so it doesn't keep the call's values alive
+  public void pop() {
+    frames[--depth].clear();
+  }
+}
@@ -0,0 +1,26 @@
+package com.lang.elox.core.compiling;
+
+// Compiled body of a script, module, function or lambda
+
+final class Chunk {
+  final String name;
+  final int arity;
+  // slots the frame keeps locals in, the operand stack starts after them
+  final int locals;
+  final int[] code;
+  final Object[] constants;
+  final int maxStack;
+  // what a closure made from the chunk captures, null if nothing: a slot of
+  // the frame creating it, or for c < 0 that frame's upvalue -1 - c
+  final int[] captures;
+
+  Chunk(String name, int arity, int locals, int[] code, Object[] constants, int maxStack, int[] captures) {
+    this.name = name;
+    this.arity = arity;
+    this.locals = locals;
+    this.code = code;
+    this.constants = constants;
+    this.maxStack = maxStack;
+    this.captures = captures;
+  }
+}
@@ -0,0 +1,15 @@
+package com.lang.elox.core.compiling;
+
+import com.lang.elox.core.scanning.Token;
+
+final class ClassChunk {
+  final String name;
+  final Token superclass;
+  final Chunk[] methods;
+
+  ClassChunk(String name, Token superclass, Chunk[] methods) {
+    this.name = name;
+    this.superclass = superclass;
+    this.methods = methods;
+  }
+}
@@ -0,0 +1,51 @@
+package com.lang.elox.core.compiling;
+
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.representation.runtime.classes.TFunctionClass;
+import com.lang.elox.representation.runtime.instances.TInstance;
+
+final class CompiledFunction extends TFunctionClass implements IMethod {
+  final Chunk chunk;
+  // the variables it captured, see Chunk.captures
+  final Object[] upvalues;
+  // set on bound methods
+  final TInstance receiver;
+  private final VM vm;
+
+  CompiledFunction(Chunk chunk, Object[] upvalues, VM vm) {
+    this(chunk, upvalues, null, vm);
+  }
+
+  private CompiledFunction(Chunk chunk, Object[] upvalues, TInstance receiver, VM vm) {
+    this.chunk = chunk;
+    this.upvalues = upvalues;
+    this.receiver = receiver;
+    this.vm = vm;
+  }
+
+  @Override
+  public CompiledFunction bind(TInstance instance) {
+    return new CompiledFunction(chunk, upvalues, instance, vm);
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, Object... arguments) {
+    return vm.call(chunk, upvalues, receiver, arguments);
+  }
+
+  @Override
+  public Object invoke(Interpreter interpreter, TInstance instance, Object[] arguments) {
+    return vm.call(chunk, upvalues, instance, arguments);
+  }
+
+  @Override
+  public int arity() {
+    return chunk.arity;
+  }
+
+  @Override
+  public String toString() {
+    return "[Function: " + chunk.name + "]";
+  }
+}
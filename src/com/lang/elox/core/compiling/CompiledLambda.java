@@ -0,0 +1,33 @@
+package com.lang.elox.core.compiling;
+
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.representation.runtime.classes.TLambdaClass;
+
+final class CompiledLambda extends TLambdaClass implements ICallable {
+  final Chunk chunk;
+  // see CompiledFunction
+  final Object[] upvalues;
+  private final VM vm;
+
+  CompiledLambda(Chunk chunk, Object[] upvalues, VM vm) {
+    this.chunk = chunk;
+    this.upvalues = upvalues;
+    this.vm = vm;
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, Object... arguments) {
+    return vm.call(chunk, upvalues, null, arguments);
+  }
+
+  @Override
+  public int arity() {
+    return chunk.arity;
+  }
+
+  @Override
+  public String toString() {
+    return "[Lambda]";
+  }
+}
@@ -0,0 +1,681 @@
+package com.lang.elox.core.compiling;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.InlineCache;
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.core.scanning.TokenType;
+import com.lang.elox.representation.interfaces.ExprVisitor;
+import com.lang.elox.representation.interfaces.StmtVisitor;
+import com.lang.elox.representation.parsetime.Expr;
+import com.lang.elox.representation.parsetime.Stmt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.lang.elox.core.compiling.OpCode.*;
+
+// Lowers resolved statements to bytecode chunks. A function's frame keeps
+// every local of the function in one slot array: each scope Resolver opened
+// inside it starts where the scope around it ends, so a (depth, slot) pair
+// becomes a slot counted from the start of the frame. Variables of enclosing
+// functions are read through the upvalues Resolver assigned, globals
+// through their cells.
+
+public final class Compiler implements ExprVisitor<Void>, StmtVisitor<Void> {
+  private final Environment globals;
+  private ChunkBuilder current;
+
+  private static final class ChunkBuilder {
+    private int[] code = new int[64];
+    private int count = 0;
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> indexes = new HashMap<>();
+    private int depth = 0;
+    private int maxDepth = 0;
+
+    // first slot of each open scope, innermost last, and the first free slot
+    private final List<Integer> scopes = new ArrayList<>();
+    private int locals = 0;
+    private int maxLocals = 0;
+
+    // frame slot of the receiver an initializer returns, -1 elsewhere
+    private int initializer = -1;
+
+    // try blocks a break or continue has to leave
+    private int tryDepth = 0;
+    private final List<Loop> loops = new ArrayList<>();
+
+    Chunk build(String name, int arity, int[] captures) {
+      return new Chunk(name, arity, maxLocals, Arrays.copyOf(code, count), constants.toArray(), maxDepth, captures);
+    }
+  }
+
+  private static final class Loop {
+    final int tryDepth;
+    final List<Integer> breaks = new ArrayList<>();
+    final List<Integer> continues = new ArrayList<>();
+
+    Loop(int tryDepth) {
+      this.tryDepth = tryDepth;
+    }
+  }
+
+  public Compiler(Environment globals) {
+    this.globals = globals;
+  }
+
+  Chunk compile(List<Stmt> statements) {
+    current = new ChunkBuilder();
+    pushScope(0);
+    statements.forEach(this::compile);
+    emit(NIL, 1);
+    emit(RETURN, -1);
+    return current.build("script", 0, null);
+  }
+
+  // The parameters, and the receiver after them for methods, are already in
+  // the frame when the body starts. captures are computed in the enclosing
+  // chunk, where the closure is created.
+  private Chunk compileBody(String name, int arity, int parameters, int frameSize, int[] boxedSlots,
+                            int[] captures, boolean initializer, List<Stmt> statements) {
+    ChunkBuilder enclosing = current;
+    current = new ChunkBuilder();
+    if (initializer) current.initializer = arity;
+    pushScope(frameSize);
+    box(boxedSlots, parameters);
+    statements.forEach(this::compile);
+    emitReturn();
+    Chunk chunk = current.build(name, arity, captures);
+    current = enclosing;
+    return chunk;
+  }
+
+  private Chunk compileFunction(Stmt.Function stmt, boolean method) {
+    int arity = stmt.params.size();
+    return compileBody(stmt.name.lexeme, arity, method ? arity + 1 : arity, stmt.frameSize, stmt.boxedSlots,
+        captures(stmt.captureDepths, stmt.captureSlots), method && stmt.name.lexeme.equals("__init__"), stmt.body);
+  }
+
+  private void compile(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  private void compile(Expr expr) {
+    expr.accept(this);
+  }
+
+  // emitting
+
+  private void emit(int op, int stackEffect) {
+    write(op);
+    current.depth += stackEffect;
+    if (current.depth > current.maxDepth) current.maxDepth = current.depth;
+  }
+
+  private void emit(int op, int stackEffect, int operand) {
+    emit(op, stackEffect);
+    write(operand);
+  }
+
+  private void emit(int op, int stackEffect, int first, int second) {
+    emit(op, stackEffect);
+    write(first);
+    write(second);
+  }
+
+  private void emit(int op, int stackEffect, int first, int second, int third) {
+    emit(op, stackEffect, first, second);
+    write(third);
+  }
+
+  private void write(int value) {
+    if (current.count == current.code.length) {
+      current.code = Arrays.copyOf(current.code, current.count * 2);
+    }
+    current.code[current.count++] = value;
+  }
+
+  private int constant(Object value) {
+    Integer index = current.indexes.get(value);
+    if (index == null) {
+      index = current.constants.size();
+      current.constants.add(value);
+      current.indexes.put(value, index);
+    }
+    return index;
+  }
+
+  // a return without a value, which gives nil or an initializer's receiver
+  private void emitReturn() {
+    if (current.initializer != -1) {
+      emit(GET_LOCAL, 1, current.initializer);
+    } else {
+      emit(NIL, 1);
+    }
+    emit(RETURN, -1);
+  }
+
+  private int emitJump(int op, int stackEffect) {
+    emit(op, stackEffect, -1);
+    return current.count - 1;
+  }
+
+  private void patchJump(int operand) {
+    current.code[operand] = current.count;
+  }
+
+  // scopes only move where the next scope's slots start, nothing runs
+  private void pushScope(int size) {
+    current.scopes.add(current.locals);
+    current.locals += size;
+    if (current.locals > current.maxLocals) current.maxLocals = current.locals;
+  }
+
+  private void popScope() {
+    current.locals = current.scopes.remove(current.scopes.size() - 1);
+  }
+
+  // the frame slot of a local declared depth scopes out
+  private int local(int depth, int slot) {
+    return current.scopes.get(current.scopes.size() - 1 - depth) + slot;
+  }
+
+  // Puts the given slots of the innermost scope into cells. The first
+  // 'kept' slots already hold their value, the others are not defined yet.
+  private void box(int[] boxedSlots, int kept) {
+    if (boxedSlots == null) return;
+    for (int slot : boxedSlots) {
+      emit(slot < kept ? BOX : CELL, 0, local(0, slot));
+    }
+  }
+
+  // see Chunk.captures
+  private int[] captures(int[] depths, int[] slots) {
+    if (depths == null) return null;
+    int[] captures = new int[depths.length];
+    for (int i = 0; i < depths.length; i++) {
+      captures[i] = depths[i] == -1 ? -1 - slots[i] : local(depths[i], slots[i]);
+    }
+    return captures;
+  }
+
+  // leaves the try blocks entered since the start of the loop
+  private Loop unwind() {
+    Loop loop = current.loops.get(current.loops.size() - 1);
+    for (int i = loop.tryDepth; i < current.tryDepth; i++) emit(END_TRY, 0);
+    return loop;
+  }
+
+  private void define(Token name, int slot, boolean boxed) {
+    if (slot == -1) {
+      emit(DEFINE_GLOBAL, -1, constant(globals.cell(name.lexeme)));
+    } else {
+      emit(boxed ? DEFINE_BOXED : DEFINE_LOCAL, -1, local(0, slot));
+    }
+  }
+
+  // statements
+
+  @Override
+  public Void visit(Stmt.Expression stmt) {
+    compileEffect(stmt.expression);
+    return null;
+  }
+
+  // an expression whose value is dropped, a local assignment stores and
+  // pops in one instruction
+  private void compileEffect(Expr expr) {
+    if (expr instanceof Expr.Assign) {
+      Expr.Assign assign = (Expr.Assign) expr;
+      if (assign.upvalue == -1 && assign.depth != -1) {
+        compile(assign.value);
+        emit(assign.boxed ? DEFINE_BOXED : DEFINE_LOCAL, -1, local(assign.depth, assign.slot));
+        return;
+      }
+    }
+
+    compile(expr);
+    emit(POP, -1);
+  }
+
+  // Jumps to the returned operand when condition is false. A comparison
+  // tests and jumps in one instruction.
+  private int compileCondition(Expr condition) {
+    if (condition instanceof Expr.Binary) {
+      Expr.Binary binary = (Expr.Binary) condition;
+      int op;
+      switch (binary.operator.type) {
+        case LESS: op = JUMP_IF_NOT_LESS; break;
+        case LESS_EQUAL: op = JUMP_IF_NOT_LESS_EQUAL; break;
+        case GREATER: op = JUMP_IF_NOT_GREATER; break;
+        case GREATER_EQUAL: op = JUMP_IF_NOT_GREATER_EQUAL; break;
+        default: op = -1;
+      }
+
+      if (op != -1) {
+        compile(binary.left);
+        compile(binary.right);
+        emit(op, -2, -1, constant(binary.operator));
+        return current.count - 2;
+      }
+    }
+
+    compile(condition);
+    return emitJump(JUMP_IF_FALSE, -1);
+  }
+
+  @Override
+  public Void visit(Stmt.Var stmt) {
+    if (stmt.initializer != null) {
+      compile(stmt.initializer);
+    } else {
+      emit(NIL, 1);
+    }
+
+    define(stmt.name, stmt.slot, stmt.boxed);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Block stmt) {
+    if (stmt.frameSize == 0) {
+      stmt.statements.forEach(this::compile);
+      return null;
+    }
+
+    pushScope(stmt.frameSize);
+    box(stmt.boxedSlots, 0);
+    stmt.statements.forEach(this::compile);
+    popScope();
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.For stmt) {
+    if (stmt.frameSize != 0) {
+      pushScope(stmt.frameSize);
+      box(stmt.boxedSlots, 0);
+    }
+    if (stmt.initializer != null) compile(stmt.initializer);
+    compile(stmt.loop);
+    if (stmt.frameSize != 0) popScope();
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.If stmt) {
+    int elseJump = compileCondition(stmt.condition);
+    compile(stmt.thenBranch);
+
+    if (stmt.elseBranch != null) {
+      int endJump = emitJump(JUMP, 0);
+      patchJump(elseJump);
+      compile(stmt.elseBranch);
+      patchJump(endJump);
+    } else {
+      patchJump(elseJump);
+    }
+
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.While stmt) {
+    int start = current.count;
+    int exitJump = compileCondition(stmt.condition);
+
+    Loop loop = new Loop(current.tryDepth);
+    current.loops.add(loop);
+    compile(stmt.body);
+    current.loops.remove(current.loops.size() - 1);
+
+    loop.continues.forEach(this::patchJump);
+    if (stmt.increment != null) compileEffect(stmt.increment);
+    emit(JUMP, 0, start);
+    patchJump(exitJump);
+    loop.breaks.forEach(this::patchJump);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Break stmt) {
+    Loop loop = unwind();
+    loop.breaks.add(emitJump(JUMP, 0));
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Continue stmt) {
+    Loop loop = unwind();
+    loop.continues.add(emitJump(JUMP, 0));
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Function stmt) {
+    emit(FUNCTION, 1, constant(compileFunction(stmt, false)));
+    define(stmt.name, stmt.slot, stmt.boxed);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Return stmt) {
+    if (stmt.value == null) {
+      emitReturn();
+      return null;
+    }
+
+    compile(stmt.value);
+    emit(RETURN, -1);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Class stmt) {
+    if (stmt.superclass != null) {
+      compile(stmt.superclass);
+    } else {
+      emit(NIL, 1);
+    }
+
+    // methods capture the superclass from the scope Resolver opened for 'super'
+    if (stmt.superclass != null) {
+      pushScope(1);
+      emit(SET_LOCAL, 0, local(0, 0));
+    }
+
+    Chunk[] methods = new Chunk[stmt.methods.size()];
+    for (int i = 0; i < methods.length; i++) {
+      methods[i] = compileFunction(stmt.methods.get(i), true);
+    }
+
+    if (stmt.superclass != null) popScope();
+    Token superclass = stmt.superclass != null ? stmt.superclass.name : null;
+    emit(CLASS, 0, constant(new ClassChunk(stmt.name.lexeme, superclass, methods)));
+    define(stmt.name, stmt.slot, stmt.boxed);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Import stmt) {
+    emit(IMPORT, 0, constant(compileModule(stmt)), constant(stmt));
+    return null;
+  }
+
+  // a module returns the values of its top-level variables in a list
+  private Chunk compileModule(Stmt.Import stmt) {
+    ChunkBuilder enclosing = current;
+    current = new ChunkBuilder();
+    int count = stmt.locals.size();
+    pushScope(count);
+    box(stmt.boxedSlots, 0);
+    stmt.statements.forEach(this::compile);
+
+    for (int slot = 0; slot < count; slot++) {
+      emit(isBoxed(stmt.boxedSlots, slot) ? GET_BOXED : GET_LOCAL, 1, local(0, slot));
+    }
+    emit(LIST, 1 - count, count);
+    emit(RETURN, -1);
+    Chunk chunk = current.build((String) stmt.name.literal, 0, null);
+    current = enclosing;
+    return chunk;
+  }
+
+  private static boolean isBoxed(int[] boxedSlots, int slot) {
+    if (boxedSlots == null) return false;
+    for (int boxed : boxedSlots) {
+      if (boxed == slot) return true;
+    }
+    return false;
+  }
+
+  @Override
+  public Void visit(Stmt.Try stmt) {
+    int handlerJump = emitJump(TRY, 0);
+    current.tryDepth++;
+    pushScope(stmt.tryFrameSize);
+    box(stmt.tryBoxedSlots, 0);
+    stmt.tryStmt.forEach(this::compile);
+    popScope();
+    emit(END_TRY, 0);
+    current.tryDepth--;
+    int endJump = emitJump(JUMP, 0);
+
+    // the VM pushes the caught value before jumping to the handler
+    patchJump(handlerJump);
+    current.depth++;
+    pushScope(stmt.catchFrameSize);
+    emit(DEFINE_LOCAL, -1, local(0, 0));
+    box(stmt.catchBoxedSlots, 1);
+    stmt.catchStmt.forEach(this::compile);
+    popScope();
+    patchJump(endJump);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Throw stmt) {
+    compile(stmt.expr);
+    emit(THROW, -1, constant(stmt.token));
+    return null;
+  }
+
+  // expressions
+
+  @Override
+  public Void visit(Expr.Literal expr) {
+    if (expr.value == null) {
+      emit(NIL, 1);
+    } else if (expr.value.equals(true)) {
+      emit(TRUE, 1);
+    } else if (expr.value.equals(false)) {
+      emit(FALSE, 1);
+    } else {
+      emit(CONSTANT, 1, constant(expr.value));
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.StringLiteral expr) {
+    emit(CONSTANT, 1, constant(expr.constant));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.TypeLiteral expr) {
+    emit(TYPE, 1, constant(expr.name));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Grouping expr) {
+    compile(expr.expr);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Unary expr) {
+    compile(expr.right);
+    switch (expr.operator.type) {
+      case NOT: emit(NOT, 0); break;
+      case MINUS: emit(NEGATE, 0, constant(expr.operator)); break;
+      case BIT_COMPL: emit(COMPLEMENT, 0, constant(expr.operator)); break;
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Binary expr) {
+    compile(expr.left);
+    compile(expr.right);
+
+    int op;
+    switch (expr.operator.type) {
+      case PLUS: op = ADD; break;
+      case MINUS: op = SUBTRACT; break;
+      case STAR: op = MULTIPLY; break;
+      case SLASH: op = DIVIDE; break;
+      case REMAINDER: op = OpCode.REMAINDER; break;
+      case BIT_AND: op = OpCode.BIT_AND; break;
+      case BIT_OR: op = OpCode.BIT_OR; break;
+      case BIT_XOR: op = OpCode.BIT_XOR; break;
+      case BIT_LEFT: op = OpCode.BIT_LEFT; break;
+      case BIT_RIGHT: op = OpCode.BIT_RIGHT; break;
+      case EQUAL_EQUAL: op = EQUAL; break;
+      case NOT_EQUAL: op = OpCode.NOT_EQUAL; break;
+      case GREATER: op = OpCode.GREATER; break;
+      case GREATER_EQUAL: op = OpCode.GREATER_EQUAL; break;
+      case LESS: op = OpCode.LESS; break;
+      case LESS_EQUAL: op = OpCode.LESS_EQUAL; break;
+      case IS: op = OpCode.IS; break;
+      default:
+        throw new IllegalStateException("Unknown binary operator " + expr.operator.lexeme);
+    }
+
+    emit(op, -1, constant(expr.operator));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Logical expr) {
+    compile(expr.left);
+    // the left operand stays on the stack when it decides the result
+    int endJump = emitJump(expr.operator.type == TokenType.OR ? JUMP_IF_TRUE_OR_POP : JUMP_IF_FALSE_OR_POP, -1);
+    compile(expr.right);
+    patchJump(endJump);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Variable expr) {
+    if (expr.upvalue != -1) {
+      emit(expr.boxed ? GET_BOXED_UPVALUE : GET_UPVALUE, 1, expr.upvalue);
+    } else if (expr.depth != -1) {
+      emit(expr.boxed ? GET_BOXED : GET_LOCAL, 1, local(expr.depth, expr.slot));
+    } else {
+      emit(GET_GLOBAL, 1, constant(globals.cell(expr.name.lexeme)), constant(expr.name));
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Assign expr) {
+    compile(expr.value);
+    // captured variables that are assigned are always boxed
+    if (expr.upvalue != -1) {
+      emit(SET_BOXED_UPVALUE, 0, expr.upvalue);
+    } else if (expr.depth != -1) {
+      emit(expr.boxed ? SET_BOXED : SET_LOCAL, 0, local(expr.depth, expr.slot));
+    } else {
+      emit(SET_GLOBAL, 0, constant(globals.cell(expr.name.lexeme)), constant(expr.name));
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.This expr) {
+    if (expr.upvalue != -1) {
+      emit(GET_UPVALUE, 1, expr.upvalue);
+    } else {
+      emit(GET_LOCAL, 1, local(expr.depth, expr.slot));
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Super expr) {
+    // the receiver is encoded like a capture, see Chunk.captures
+    int receiver = expr.receiverUpvalue != -1 ? -1 - expr.receiverUpvalue : local(expr.depth - 1, expr.slot);
+    emit(GET_SUPER, 1, expr.upvalue, receiver, constant(expr.method));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Call expr) {
+    compile(expr.callee);
+    expr.arguments.forEach(this::compile);
+    emit(expr.tailCall ? TAIL_CALL : CALL, -expr.arguments.size(), expr.arguments.size(), constant(expr.paren));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Invoke expr) {
+    compile(expr.object);
+    emit(GET_METHOD, 1, constant(new InlineCache.Property(expr.name)));
+    expr.arguments.forEach(this::compile);
+    emit(expr.tailCall ? TAIL_INVOKE : INVOKE, -expr.arguments.size() - 1, expr.arguments.size(), constant(expr.paren), constant(expr.name));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Instance expr) {
+    compile(expr.clazz);
+    expr.arguments.forEach(this::compile);
+    emit(NEW, -expr.arguments.size(), expr.arguments.size(), constant(expr.paren));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Get expr) {
+    compile(expr.object);
+    emit(GET_PROPERTY, 0, constant(new InlineCache.Property(expr.name)));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Set expr) {
+    compile(expr.object);
+    emit(CHECK_INSTANCE, 0, constant(expr.name));
+    compile(expr.value);
+    emit(SET_PROPERTY, -1, constant(expr.name));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.ListLiteral expr) {
+    expr.elements.forEach(this::compile);
+    emit(LIST, 1 - expr.elements.size(), expr.elements.size());
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.DictLiteral expr) {
+    emit(DICT, 1);
+    for (Map.Entry<Expr, Expr> entry : expr.map.entrySet()) {
+      compile(entry.getKey());
+      compile(entry.getValue());
+      emit(DICT_PUT, -2, constant(expr.paren));
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.IndexGet expr) {
+    compile(expr.object);
+    compile(expr.index);
+    emit(INDEX_GET, -1, constant(expr.token));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.IndexSet expr) {
+    compile(expr.object);
+    compile(expr.index);
+    compile(expr.value);
+    emit(INDEX_SET, -2, constant(expr.token));
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Lambda expr) {
+    int arity = expr.params.size();
+    Chunk chunk = compileBody("lambda", arity, arity, expr.frameSize, expr.boxedSlots,
+        captures(expr.captureDepths, expr.captureSlots), false, expr.body);
+    emit(LAMBDA, 1, constant(chunk));
+    return null;
+  }
+}
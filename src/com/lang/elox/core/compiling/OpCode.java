@@ -0,0 +1,98 @@
+package com.lang.elox.core.compiling;
+
+// Instruction set of the VM. Operands follow the opcode in the code array,
+// 'k' operands are indexes into the chunk's constant pool. Local slots are
+// counted from the start of the frame, see Compiler.
+
+final class OpCode {
+  private OpCode() {}
+
+  // constants and literals
+
+  static final int CONSTANT = 0;        // k
+  static final int NIL = 1;
+  static final int TRUE = 2;
+  static final int FALSE = 3;
+  static final int TYPE = 4;            // k (Token)
+  static final int POP = 5;
+
+  // variables
+
+  static final int GET_LOCAL = 6;       // slot
+  static final int SET_LOCAL = 7;       // slot
+  static final int DEFINE_LOCAL = 8;    // slot
+  static final int GET_BOXED = 9;       // slot holding a cell
+  static final int SET_BOXED = 10;      // slot holding a cell
+  static final int DEFINE_BOXED = 11;   // slot holding a cell
+  static final int BOX = 12;            // slot, puts its value into a new cell
+  static final int CELL = 13;           // slot, puts a new empty cell there
+  static final int GET_UPVALUE = 14;    // index
+  static final int GET_BOXED_UPVALUE = 15; // index
+  static final int SET_BOXED_UPVALUE = 16; // index
+  static final int GET_GLOBAL = 17;     // k (Cell), k (Token)
+  static final int SET_GLOBAL = 18;     // k (Cell), k (Token)
+  static final int DEFINE_GLOBAL = 19;  // k (Cell)
+
+  // objects
+
+  static final int GET_PROPERTY = 20;   // k (InlineCache.Property)
+  static final int GET_METHOD = 21;     // k (InlineCache.Property), pushes the method and its receiver
+  static final int CHECK_INSTANCE = 22; // k (Token)
+  static final int SET_PROPERTY = 23;   // k (Token)
+  static final int GET_SUPER = 24;      // superclass upvalue, receiver, k (Token)
+  static final int INDEX_GET = 25;      // k (Token)
+  static final int INDEX_SET = 26;      // k (Token)
+  static final int LIST = 27;           // count
+  static final int DICT = 28;
+  static final int DICT_PUT = 29;       // k (Token)
+
+  // operators, all take k (Token) for error reporting
+
+  static final int ADD = 30;
+  static final int SUBTRACT = 31;
+  static final int MULTIPLY = 32;
+  static final int DIVIDE = 33;
+  static final int REMAINDER = 34;
+  static final int BIT_AND = 35;
+  static final int BIT_OR = 36;
+  static final int BIT_XOR = 37;
+  static final int BIT_LEFT = 38;
+  static final int BIT_RIGHT = 39;
+  static final int EQUAL = 40;
+  static final int NOT_EQUAL = 41;
+  static final int GREATER = 42;
+  static final int GREATER_EQUAL = 43;
+  static final int LESS = 44;
+  static final int LESS_EQUAL = 45;
+  static final int IS = 46;
+  static final int NEGATE = 47;
+  static final int COMPLEMENT = 48;
+  static final int NOT = 49;
+
+  // control flow
+
+  static final int JUMP = 50;           // target
+  static final int JUMP_IF_FALSE = 51;  // target
+  static final int JUMP_IF_TRUE_OR_POP = 52;  // target
+  static final int JUMP_IF_FALSE_OR_POP = 53; // target
+  static final int JUMP_IF_NOT_LESS = 54;          // target, k (Token), compares the two values on top
+  static final int JUMP_IF_NOT_LESS_EQUAL = 55;    // target, k (Token)
+  static final int JUMP_IF_NOT_GREATER = 56;       // target, k (Token)
+  static final int JUMP_IF_NOT_GREATER_EQUAL = 57; // target, k (Token)
+  static final int TRY = 58;            // handler target
+  static final int END_TRY = 59;
+  static final int THROW = 60;          // k (Token)
+
+  // functions and classes
+
+  static final int CALL = 61;           // argument count, k (Token)
+  static final int INVOKE = 62;         // argument count, k (Token), k (Token name)
+  static final int TAIL_CALL = 63;      // as CALL, a compiled callee takes over the frame
+  static final int TAIL_INVOKE = 64;    // as INVOKE
+  static final int NEW = 65;            // argument count, k (Token)
+  static final int RETURN = 66;
+  static final int FUNCTION = 67;       // k (Chunk)
+  static final int LAMBDA = 68;         // k (Chunk)
+  static final int CLASS = 69;          // k (ClassChunk)
+  static final int IMPORT = 70;         // k (Chunk), k (Stmt.Import)
+}
@@ -0,0 +1,716 @@
+package com.lang.elox.core.compiling;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.InlineCache;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.interpreting.Operations;
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.errors.RuntimeError;
+import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.representation.interfaces.INativeCallable;
+import com.lang.elox.representation.parsetime.Stmt;
+import com.lang.elox.representation.runtime.instances.*;
+import com.lang.elox.utils.ErrorReporter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.lang.elox.core.compiling.OpCode.*;
+
+// Stack based virtual machine executing chunks produced by Compiler.
+// Calls between compiled functions push a frame instead of recursing on the
+// Java stack, natives and constructors are called through ICallable. Frames
+// live in a growable array, so the depth of Elox recursion is bounded only
+// by maxDepth.
+//
+// A frame is a window of the value stack: the callee, then the locals from
+// the frame base, then the operands. Arguments are pushed right where the
+// callee's parameters live, so a call allocates nothing but the closures
+// and cells the callee creates.
+
+public final class VM {
+  public static final int DEFAULT_MAX_DEPTH = 1 << 18;
+
+  private final Interpreter interpreter;
+  private final ErrorReporter reporter;
+  private final Environment globals;
+
+  private Object[] stack = new Object[1024];
+  private int sp = 0;
+
+  private Frame[] frames = new Frame[64];
+  private int frameCount = 0;
+  private int maxDepth = DEFAULT_MAX_DEPTH;
+
+  private Handler[] handlers = new Handler[16];
+  private int handlerCount = 0;
+
+  private static final class Frame {
+    Chunk chunk;
+    int ip;
+    // slot 0 of the frame, the callee and later the result sit right below
+    int base;
+    Object[] upvalues;
+  }
+
+  private static final class Handler {
+    int frameCount;
+    int sp;
+    int target;
+  }
+
+  // natives receive the interpreter so they can call back into Elox code
+  public VM(Interpreter interpreter, ErrorReporter reporter) {
+    this.interpreter = interpreter;
+    this.reporter = reporter;
+    this.globals = interpreter.getGlobals();
+  }
+
+  public void setMaxDepth(int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  public void interpret(List<Stmt> statements) {
+    try {
+      Chunk script = new Compiler(globals).compile(statements);
+      call(script, null, null, new Object[0]);
+    } catch (RuntimeError error) {
+      reporter.runtimeError(error);
+    } catch (TException error) {
+      reporter.runtimeError(new RuntimeError(error.getToken(), "Error: " + error.getValue()));
+    } catch (StackOverflowError e) {
+      reporter.error("Error: stack overflow.");
+    } catch (Exception e) {
+      reporter.error("Error: " + e.getMessage());
+    }
+  }
+
+  // runs chunk in a new frame on top of the current ones until it returns
+  Object call(Chunk chunk, Object[] upvalues, TInstance receiver, Object[] arguments) {
+    int savedSp = sp, savedFrameCount = frameCount, savedHandlerCount = handlerCount;
+    int base = sp + 1;
+    pushFrame(chunk, upvalues, base);
+    Object[] stack = this.stack;
+    stack[base - 1] = null;
+    System.arraycopy(arguments, 0, stack, base, arguments.length);
+    if (receiver != null) stack[base + chunk.arity] = receiver;
+    sp = base + chunk.locals;
+
+    try {
+      return run(savedFrameCount);
+    } catch (RuntimeException | Error e) {
+      sp = savedSp;
+      frameCount = savedFrameCount;
+      handlerCount = savedHandlerCount;
+      throw e;
+    }
+  }
+
+  private void pushFrame(Chunk chunk, Object[] upvalues, int base) {
+    // calls check the depth themselves to report it at the call site
+    if (frameCount >= maxDepth) throw new StackOverflowError();
+    if (frameCount == frames.length) {
+      frames = Arrays.copyOf(frames, frameCount * 2);
+    }
+    reserve(base + chunk.locals + chunk.maxStack);
+
+    Frame frame = frames[frameCount];
+    if (frame == null) frame = frames[frameCount] = new Frame();
+    frame.chunk = chunk;
+    frame.ip = 0;
+    frame.base = base;
+    frame.upvalues = upvalues;
+    frameCount++;
+  }
+
+  private void reserve(int top) {
+    if (top >= stack.length) {
+      stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + 1));
+    }
+  }
+
+  private Object run(int exitFrame) {
+    int handlerBase = handlerCount;
+    for (;;) {
+      try {
+        return execute(exitFrame);
+      } catch (RuntimeError | TException error) {
+        if (handlerCount == handlerBase) throw error;
+
+        Handler handler = handlers[--handlerCount];
+        frameCount = handler.frameCount;
+        sp = handler.sp;
+        frames[frameCount - 1].ip = handler.target;
+        stack[sp++] = error instanceof RuntimeError
+            ? new TException((RuntimeError) error)
+            : ((TException) error).getValue();
+      }
+    }
+  }
+
+  private Object execute(int exitFrame) {
+    Frame frame = frames[frameCount - 1];
+    int[] code = frame.chunk.code;
+    Object[] constants = frame.chunk.constants;
+    Object[] upvalues = frame.upvalues;
+    Object[] stack = this.stack;
+    int base = frame.base;
+    int ip = frame.ip;
+    int sp = this.sp;
+
+    for (;;) {
+      switch (code[ip++]) {
+        case CONSTANT:
+          stack[sp++] = constants[code[ip++]];
+          break;
+        case NIL:
+          stack[sp++] = null;
+          break;
+        case TRUE:
+          stack[sp++] = true;
+          break;
+        case FALSE:
+          stack[sp++] = false;
+          break;
+        case TYPE:
+          stack[sp++] = Operations.typeLiteral((Token) constants[code[ip++]]);
+          break;
+        case POP:
+          sp--;
+          break;
+
+        case GET_LOCAL:
+          stack[sp++] = stack[base + code[ip++]];
+          break;
+        case SET_LOCAL:
+          stack[base + code[ip++]] = stack[sp - 1];
+          break;
+        case DEFINE_LOCAL:
+          stack[base + code[ip++]] = stack[--sp];
+          break;
+        case GET_BOXED:
+          stack[sp++] = ((Environment.Cell) stack[base + code[ip++]]).get();
+          break;
+        case SET_BOXED:
+          ((Environment.Cell) stack[base + code[ip++]]).set(stack[sp - 1]);
+          break;
+        case DEFINE_BOXED:
+          ((Environment.Cell) stack[base + code[ip++]]).set(stack[--sp]);
+          break;
+        case BOX: {
+          int slot = base + code[ip++];
+          stack[slot] = new Environment.Cell(stack[slot]);
+          break;
+        }
+        case CELL:
+          stack[base + code[ip++]] = new Environment.Cell(null);
+          break;
+        case GET_UPVALUE:
+          stack[sp++] = upvalues[code[ip++]];
+          break;
+        case GET_BOXED_UPVALUE:
+          stack[sp++] = ((Environment.Cell) upvalues[code[ip++]]).get();
+          break;
+        case SET_BOXED_UPVALUE:
+          ((Environment.Cell) upvalues[code[ip++]]).set(stack[sp - 1]);
+          break;
+        case GET_GLOBAL: {
+          Environment.Cell cell = (Environment.Cell) constants[code[ip++]];
+          stack[sp++] = globals.get(cell, (Token) constants[code[ip++]]);
+          break;
+        }
+        case SET_GLOBAL: {
+          Environment.Cell cell = (Environment.Cell) constants[code[ip++]];
+          globals.assign(cell, (Token) constants[code[ip++]], stack[sp - 1]);
+          break;
+        }
+        case DEFINE_GLOBAL:
+          globals.define((Environment.Cell) constants[code[ip++]], stack[--sp]);
+          break;
+
+        case GET_PROPERTY:
+          stack[sp - 1] = ((InlineCache.Property) constants[code[ip++]]).get(stack[sp - 1]);
+          break;
+        case GET_METHOD: {
+          // methods, native ones included, are left unbound with the receiver
+          // above them, anything else is read as a property and gets no receiver
+          InlineCache.Property cache = (InlineCache.Property) constants[code[ip++]];
+          Object object = stack[sp - 1];
+          Object method = cache.method(object);
+          if (method == null) method = cache.nativeMethod(object);
+
+          if (method != null) {
+            stack[sp - 1] = method;
+            stack[sp++] = object;
+          } else {
+            stack[sp - 1] = cache.get(object);
+            stack[sp++] = null;
+          }
+          break;
+        }
+        case CHECK_INSTANCE:
+          if (!(stack[sp - 1] instanceof TInstance))
+            throw new RuntimeError((Token) constants[code[ip]], "Only instances have fields.");
+          ip++;
+          break;
+        case SET_PROPERTY: {
+          Object value = stack[--sp];
+          ((TInstance) stack[sp - 1]).set((Token) constants[code[ip++]], value);
+          stack[sp - 1] = value;
+          break;
+        }
+        case GET_SUPER: {
+          TClass superclass = (TClass) upvalues[code[ip++]];
+          int receiver = code[ip++];
+          Token name = (Token) constants[code[ip++]];
+          TInstance object = (TInstance) (receiver >= 0 ? stack[base + receiver] : upvalues[-1 - receiver]);
+          IMethod method = superclass.findMethod(object, name.lexeme);
+          if (method == null) {
+            throw new RuntimeError(name, "Undefined method '" + name.lexeme + "'.");
+          }
+          stack[sp++] = method;
+          break;
+        }
+        case INDEX_GET: {
+          Object index = stack[--sp];
+          stack[sp - 1] = Operations.indexGet((Token) constants[code[ip++]], stack[sp - 1], index);
+          break;
+        }
+        case INDEX_SET: {
+          Object value = stack[--sp];
+          Object index = stack[--sp];
+          stack[sp - 1] = Operations.indexSet((Token) constants[code[ip++]], stack[sp - 1], index, value);
+          break;
+        }
+        case LIST: {
+          int count = code[ip++];
+          List<Object> elements = new ArrayList<>(count);
+          for (int i = sp - count; i < sp; i++) elements.add(stack[i]);
+          sp -= count;
+          stack[sp++] = new TList(elements);
+          break;
+        }
+        case DICT:
+          stack[sp++] = new TDict(new HashMap<>());
+          break;
+        case DICT_PUT: {
+          Object value = stack[--sp];
+          Object key = stack[--sp];
+          Operations.validateDictKey((Token) constants[code[ip++]], key);
+          ((TDict) stack[sp - 1]).set(key, value);
+          break;
+        }
+
+        // operators on two ints are computed in place, anything else goes
+        // through Operations, which also reports invalid operands
+        case ADD: {
+          Object right = stack[--sp];
+          Object left = stack[sp - 1];
+          stack[sp - 1] = left instanceof Integer && right instanceof Integer
+              ? (Object) ((int) left + (int) right)
+              : Operations.add((Token) constants[code[ip]], left, right);
+          ip++;
+          break;
+        }
+        case SUBTRACT: {
+          Object right = stack[--sp];
+          Object left = stack[sp - 1];
+          stack[sp - 1] = left instanceof Integer && right instanceof Integer
+              ? (Object) ((int) left - (int) right)
+              : Operations.subtract((Token) constants[code[ip]], left, right);
+          ip++;
+          break;
+        }
+        case MULTIPLY: {
+          Object right = stack[--sp];
+          Object left = stack[sp - 1];
+          stack[sp - 1] = left instanceof Integer && right instanceof Integer
+              ? (Object) ((int) left * (int) right)
+              : Operations.multiply((Token) constants[code[ip]], left, right);
+          ip++;
+          break;
+        }
+        case DIVIDE: {
+          Object right = stack[--sp];
+          stack[sp - 1] = Operations.divide((Token) constants[code[ip++]], stack[sp - 1], right);
+          break;
+        }
+        case REMAINDER: {
+          Object right = stack[--sp];
+          Object left = stack[sp - 1];
+          stack[sp - 1] = left instanceof Integer && right instanceof Integer
+              ? (Object) ((int) left % (int) right)
+              : Operations.remainder((Token) constants[code[ip]], left, right);
+          ip++;
+          break;
+        }
+        case BIT_AND: {
+          Object right = stack[--sp];
+          stack[sp - 1] = Operations.bitAnd((Token) constants[code[ip++]], stack[sp - 1], right);
+          break;
+        }
+        case BIT_OR: {
+          Object right = stack[--sp];
+          stack[sp - 1] = Operations.bitOr((Token) constants[code[ip++]], stack[sp - 1], right);
+          break;
+        }
+        case BIT_XOR: {
+          Object right = stack[--sp];
+          stack[sp - 1] = Operations.bitXor((Token) constants[code[ip++]], stack[sp - 1], right);
+          break;
+        }
+        case BIT_LEFT: {
+          Object right = stack[--sp];
+          stack[sp - 1] = Operations.shiftLeft((Token) constants[code[ip++]], stack[sp - 1], right);
+          break;
+        }
+        case BIT_RIGHT: {
+          Object right = stack[--sp];
+          stack[sp - 1] = Operations.shiftRight((Token) constants[code[ip++]], stack[sp - 1], right);
+          break;
+        }
+        case EQUAL: {
+          Object right = stack[--sp];
+          stack[sp - 1] = Operations.isEqual(stack[sp - 1], right);
+          ip++;
+          break;
+        }
+        case NOT_EQUAL: {
+          Object right = stack[--sp];
+          stack[sp - 1] = !Operations.isEqual(stack[sp - 1], right);
+          ip++;
+          break;
+        }
+        case GREATER: {
+          Object right = stack[--sp];
+          Object left = stack[sp - 1];
+          stack[sp - 1] = left instanceof Integer && right instanceof Integer
+              ? (Object) ((int) left > (int) right)
+              : Operations.greater((Token) constants[code[ip]], left, right);
+          ip++;
+          break;
+        }
+        case GREATER_EQUAL: {
+          Object right = stack[--sp];
+          Object left = stack[sp - 1];
+          stack[sp - 1] = left instanceof Integer && right instanceof Integer
+              ? (Object) ((int) left >= (int) right)
+              : Operations.greaterEqual((Token) constants[code[ip]], left, right);
+          ip++;
+          break;
+        }
+        case LESS: {
+          Object right = stack[--sp];
+          Object left = stack[sp - 1];
+          stack[sp - 1] = left instanceof Integer && right instanceof Integer
+              ? (Object) ((int) left < (int) right)
+              : Operations.less((Token) constants[code[ip]], left, right);
+          ip++;
+          break;
+        }
+        case LESS_EQUAL: {
+          Object right = stack[--sp];
+          Object left = stack[sp - 1];
+          stack[sp - 1] = left instanceof Integer && right instanceof Integer
+              ? (Object) ((int) left <= (int) right)
+              : Operations.lessEqual((Token) constants[code[ip]], left, right);
+          ip++;
+          break;
+        }
+        case IS: {
+          Object right = stack[--sp];
+          stack[sp - 1] = Operations.is((Token) constants[code[ip++]], stack[sp - 1], right);
+          break;
+        }
+        case NEGATE:
+          stack[sp - 1] = Operations.negate((Token) constants[code[ip++]], stack[sp - 1]);
+          break;
+        case COMPLEMENT:
+          stack[sp - 1] = Operations.complement((Token) constants[code[ip++]], stack[sp - 1]);
+          break;
+        case NOT:
+          stack[sp - 1] = !Operations.isTruthy(stack[sp - 1]);
+          break;
+
+        case JUMP:
+          ip = code[ip];
+          break;
+        case JUMP_IF_FALSE:
+          if (Operations.isTruthy(stack[--sp])) ip++;
+          else ip = code[ip];
+          break;
+        case JUMP_IF_TRUE_OR_POP:
+          if (Operations.isTruthy(stack[sp - 1])) ip = code[ip];
+          else { sp--; ip++; }
+          break;
+        case JUMP_IF_FALSE_OR_POP:
+          if (Operations.isTruthy(stack[sp - 1])) { sp--; ip++; }
+          else ip = code[ip];
+          break;
+        case JUMP_IF_NOT_LESS: {
+          Object right = stack[--sp];
+          Object left = stack[--sp];
+          boolean jump = left instanceof Integer && right instanceof Integer
+              ? (int) left >= (int) right
+              : !(boolean) Operations.less((Token) constants[code[ip + 1]], left, right);
+          ip = jump ? code[ip] : ip + 2;
+          break;
+        }
+        case JUMP_IF_NOT_LESS_EQUAL: {
+          Object right = stack[--sp];
+          Object left = stack[--sp];
+          boolean jump = left instanceof Integer && right instanceof Integer
+              ? (int) left > (int) right
+              : !(boolean) Operations.lessEqual((Token) constants[code[ip + 1]], left, right);
+          ip = jump ? code[ip] : ip + 2;
+          break;
+        }
+        case JUMP_IF_NOT_GREATER: {
+          Object right = stack[--sp];
+          Object left = stack[--sp];
+          boolean jump = left instanceof Integer && right instanceof Integer
+              ? (int) left <= (int) right
+              : !(boolean) Operations.greater((Token) constants[code[ip + 1]], left, right);
+          ip = jump ? code[ip] : ip + 2;
+          break;
+        }
+        case JUMP_IF_NOT_GREATER_EQUAL: {
+          Object right = stack[--sp];
+          Object left = stack[--sp];
+          boolean jump = left instanceof Integer && right instanceof Integer
+              ? (int) left < (int) right
+              : !(boolean) Operations.greaterEqual((Token) constants[code[ip + 1]], left, right);
+          ip = jump ? code[ip] : ip + 2;
+          break;
+        }
+        case TRY: {
+          if (handlerCount == handlers.length) handlers = Arrays.copyOf(handlers, handlerCount * 2);
+          Handler handler = handlers[handlerCount];
+          if (handler == null) handler = handlers[handlerCount] = new Handler();
+          handler.frameCount = frameCount;
+          handler.sp = sp;
+          handler.target = code[ip++];
+          handlerCount++;
+          break;
+        }
+        case END_TRY:
+          handlerCount--;
+          break;
+        case THROW:
+          throw new TException((Token) constants[code[ip]], stack[sp - 1]);
+
+        case CALL:
+        case INVOKE:
+        case TAIL_CALL:
+        case TAIL_INVOKE: {
+          int op = code[ip - 1];
+          boolean invoke = op == INVOKE || op == TAIL_INVOKE;
+          int count = code[ip++];
+          Token paren = (Token) constants[code[ip++]];
+          Token name = invoke ? (Token) constants[code[ip++]] : null;
+          // an invocation keeps the receiver between the callee and the arguments
+          int first = sp - count;
+          int callee = invoke ? first - 2 : first - 1;
+          Object function = stack[callee];
+          Object receiver = invoke ? stack[callee + 1] : null;
+
+          if (function instanceof INativeCallable) {
+            @SuppressWarnings("unchecked")
+            INativeCallable<Object> method = (INativeCallable<Object>) function;
+            Operations.checkArity(paren, method.arity(), count);
+            Object[] arguments = Arrays.copyOfRange(stack, first, sp);
+
+            frame.ip = ip;
+            this.sp = sp;
+            Object result = method.call(interpreter, receiver, name, arguments);
+            stack = this.stack;
+            stack[callee] = result;
+            sp = callee + 1;
+            break;
+          }
+
+          Chunk chunk;
+          Object[] closure;
+          if (function instanceof CompiledFunction) {
+            chunk = ((CompiledFunction) function).chunk;
+            closure = ((CompiledFunction) function).upvalues;
+            if (receiver == null) receiver = ((CompiledFunction) function).receiver;
+          } else if (function instanceof CompiledLambda) {
+            chunk = ((CompiledLambda) function).chunk;
+            closure = ((CompiledLambda) function).upvalues;
+          } else {
+            ICallable target = Operations.callable(paren, function, count);
+            Object[] arguments = Arrays.copyOfRange(stack, first, sp);
+
+            frame.ip = ip;
+            this.sp = sp;
+            Object result = receiver != null
+                ? ((IMethod) target).invoke(interpreter, (TInstance) receiver, arguments)
+                : target.call(interpreter, arguments);
+            stack = this.stack;
+            stack[callee] = result;
+            sp = callee + 1;
+            break;
+          }
+
+          Operations.checkArity(paren, chunk.arity, count);
+          if (op == TAIL_CALL || op == TAIL_INVOKE) {
+            // Resolver marks no call inside a try, so the frame has no handler
+            // left and the callee can take it over, returning to our caller
+            System.arraycopy(stack, first, stack, base, count);
+            reserve(base + chunk.locals + chunk.maxStack);
+            stack = this.stack;
+            if (receiver != null) stack[base + count] = receiver;
+
+            frame.chunk = chunk;
+            frame.upvalues = closure;
+            code = chunk.code;
+            constants = chunk.constants;
+            upvalues = closure;
+            sp = base + chunk.locals;
+            ip = 0;
+            break;
+          }
+
+          if (frameCount >= maxDepth)
+            throw new RuntimeError(paren, "Stack overflow: call depth exceeded " + maxDepth + ".");
+
+          // the arguments become the first slots of the callee's frame, the
+          // receiver of a method the slot after them
+          if (invoke) System.arraycopy(stack, first, stack, callee + 1, count);
+          frame.ip = ip;
+          pushFrame(chunk, closure, callee + 1);
+          stack = this.stack;
+          base = callee + 1;
+          if (receiver != null) stack[base + count] = receiver;
+
+          frame = frames[frameCount - 1];
+          code = chunk.code;
+          constants = chunk.constants;
+          upvalues = closure;
+          sp = base + chunk.locals;
+          ip = 0;
+          break;
+        }
+        case NEW: {
+          int count = code[ip++];
+          Token paren = (Token) constants[code[ip++]];
+          int callee = sp - count - 1;
+          Object function = stack[callee];
+
+          if (!(function instanceof TClass)) {
+            throw new RuntimeError(paren, "Can't construct object from non-class.");
+          }
+
+          TClass clazz = (TClass) function;
+          if (count != clazz.arity()) {
+            throw new RuntimeError(paren, "Expected " +
+                clazz.arity() + " arguments to constructor but got " +
+                count + ".");
+          }
+
+          Object[] arguments = Arrays.copyOfRange(stack, callee + 1, sp);
+
+          frame.ip = ip;
+          this.sp = sp;
+          Object instance = clazz.call(interpreter, arguments);
+          stack = this.stack;
+          stack[callee] = instance;
+          sp = callee + 1;
+          break;
+        }
+        case RETURN: {
+          Object result = stack[--sp];
+          while (handlerCount > 0 && handlers[handlerCount - 1].frameCount >= frameCount) {
+            handlerCount--;
+          }
+
+          frameCount--;
+          sp = frame.base - 1;
+          if (frameCount == exitFrame) {
+            this.sp = sp;
+            return result;
+          }
+
+          frame = frames[frameCount - 1];
+          code = frame.chunk.code;
+          constants = frame.chunk.constants;
+          upvalues = frame.upvalues;
+          base = frame.base;
+          ip = frame.ip;
+          stack[sp++] = result;
+          break;
+        }
+        case FUNCTION: {
+          Chunk chunk = (Chunk) constants[code[ip++]];
+          stack[sp++] = new CompiledFunction(chunk, capture(chunk, stack, base, upvalues), this);
+          break;
+        }
+        case LAMBDA: {
+          Chunk chunk = (Chunk) constants[code[ip++]];
+          stack[sp++] = new CompiledLambda(chunk, capture(chunk, stack, base, upvalues), this);
+          break;
+        }
+        case CLASS:
+          stack[sp - 1] = buildClass((ClassChunk) constants[code[ip++]], stack[sp - 1], stack, base, upvalues);
+          break;
+        case IMPORT: {
+          Chunk chunk = (Chunk) constants[code[ip++]];
+          Stmt.Import stmt = (Stmt.Import) constants[code[ip++]];
+
+          frame.ip = ip;
+          this.sp = sp;
+          importModule(chunk, stmt);
+          stack = this.stack;
+          break;
+        }
+
+        default:
+          throw new IllegalStateException("Unknown opcode " + code[ip - 1] + ".");
+      }
+    }
+  }
+
+  // the upvalues of a closure made from chunk in the frame at base
+  private static Object[] capture(Chunk chunk, Object[] stack, int base, Object[] upvalues) {
+    int[] captures = chunk.captures;
+    if (captures == null) return null;
+    Object[] values = new Object[captures.length];
+    for (int i = 0; i < captures.length; i++) {
+      int capture = captures[i];
+      values[i] = capture >= 0 ? stack[base + capture] : upvalues[-1 - capture];
+    }
+    return values;
+  }
+
+  private TClass buildClass(ClassChunk chunk, Object superclass, Object[] stack, int base, Object[] upvalues) {
+    if (chunk.superclass != null && !(superclass instanceof TClass)) {
+      throw new RuntimeError(chunk.superclass, "Superclass must be a class.");
+    }
+
+    Map<String, IMethod> methods = new HashMap<>();
+    for (Chunk method : chunk.methods) {
+      methods.put(method.name, new CompiledFunction(method, capture(method, stack, base, upvalues), this));
+    }
+
+    return new TClass(chunk.name, (TClass) superclass, methods);
+  }
+
+  private void importModule(Chunk chunk, Stmt.Import stmt) {
+    TList values;
+    try {
+      values = (TList) call(chunk, null, null, new Object[0]);
+    } catch (Exception e) {
+      reporter.error(e.getMessage());
+      throw new RuntimeError(stmt.name, "Error while importing file.");
+    }
+
+    for (int i = 0; i < stmt.locals.size(); i++) {
+      globals.define(stmt.locals.get(i), values.getElements().get(i));
+    }
+  }
+}
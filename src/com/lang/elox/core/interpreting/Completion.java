@@ -0,0 +1,22 @@
+package com.lang.elox.core.interpreting;
+
+// How the execution of a statement ended. NORMAL continues with the next
+// statement, BREAK and CONTINUE unwind to the innermost loop. Any other
+// value is the result of an executed return and unwinds to the function.
+
+public final class Completion {
+  public static final Object NORMAL = new Completion("normal");
+  public static final Object BREAK = new Completion("break");
+  public static final Object CONTINUE = new Completion("continue");
+
+  private final String name;
+
+  private Completion(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public String toString() {
+    return "[Completion: " + name + "]";
+  }
+}
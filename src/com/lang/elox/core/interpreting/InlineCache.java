@@ -0,0 +1,106 @@
+package com.lang.elox.core.interpreting;
+
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.representation.interfaces.INativeCallable;
+import com.lang.elox.representation.runtime.instances.Shape;
+import com.lang.elox.representation.runtime.instances.TInstance;
+
+import java.util.Arrays;
+
+// Caches kept on property-get sites. A site remembers what it resolved for
+// up to LIMIT different shapes; once it sees more it turns megamorphic,
+// drops its entries and does the full lookup every time.
+
+public final class InlineCache {
+  static final int LIMIT = 4;
+
+  private InlineCache() {}
+
+  // Property reads, keyed by the shape of the instance. An entry holds either
+  // the slot of a field or the unbound method the class resolves the name to.
+  public static final class Property {
+    private final Token name;
+    private final Shape[] shapes = new Shape[LIMIT];
+    private final int[] slots = new int[LIMIT];
+    private final IMethod[] methods = new IMethod[LIMIT];
+    private int count = 0;
+    private boolean megamorphic = false;
+    // last native receiver type seen by invocations and its method
+    private Class<?> nativeType;
+    private INativeCallable<Object> nativeMethod;
+
+    public Property(Token name) {
+      this.name = name;
+    }
+
+    public Object get(Object object) {
+      if (!(object instanceof TInstance)) return Operations.getProperty(name, object);
+
+      TInstance instance = (TInstance) object;
+      int entry = lookup(instance);
+      if (entry == -1) return instance.get(name);
+      return methods[entry] == null ? instance.getField(slots[entry]) : methods[entry].bind(instance);
+    }
+
+    // The unbound method an invocation of the name calls on object, or null
+    // when object is not an instance or the name isn't a method of its class.
+    public IMethod method(Object object) {
+      if (!(object instanceof TInstance)) return null;
+
+      TInstance instance = (TInstance) object;
+      int entry = lookup(instance);
+      if (entry == -1) {
+        if (instance.getShape().slotOf(name.lexeme) != -1) return null;
+        return instance.getClazz().lookupMethod(name.lexeme);
+      }
+      return methods[entry];
+    }
+
+    // The method of a string, list or dict an invocation of the name calls
+    // with object as receiver, null for other values or unknown names.
+    @SuppressWarnings("unchecked")
+    public INativeCallable<Object> nativeMethod(Object object) {
+      if (object == null) return null;
+      if (object.getClass() != nativeType) {
+        nativeMethod = (INativeCallable<Object>) Operations.nativeMethod(object, name.lexeme);
+        nativeType = object.getClass();
+      }
+      return nativeMethod;
+    }
+
+    // index of the entry for the instance, -1 if the site is megamorphic or
+    // the name is undefined
+    private int lookup(TInstance instance) {
+      Shape shape = instance.getShape();
+      for (int i = 0; i < count; i++) {
+        if (shapes[i] == shape) return i;
+      }
+
+      if (megamorphic) return -1;
+      return miss(instance, shape);
+    }
+
+    private int miss(TInstance instance, Shape shape) {
+      int slot = shape.slotOf(name.lexeme);
+      IMethod method = null;
+      if (slot == -1) {
+        method = instance.getClazz().lookupMethod(name.lexeme);
+        if (method == null) return -1;
+      }
+
+      if (count == LIMIT) {
+        megamorphic = true;
+        count = 0;
+        Arrays.fill(shapes, null);
+        Arrays.fill(methods, null);
+        return -1;
+      }
+
+      shapes[count] = shape;
+      slots[count] = slot;
+      methods[count] = method;
+      return count++;
+    }
+  }
+}
@@ -1,16 +1,19 @@
 package com.lang.elox.core.interpreting;
 
 import com.lang.elox.core.Environment;
+import com.lang.elox.core.FrameStack;
+import com.lang.elox.core.jit.CompiledCode;
+import com.lang.elox.core.jit.Jit;
 import com.lang.elox.core.scanning.Token;
-import com.lang.elox.errors.Return;
+import com.lang.elox.core.scanning.TokenType;
 import com.lang.elox.errors.RuntimeError;
 import com.lang.elox.representation.interfaces.ExprVisitor;
 import com.lang.elox.representation.interfaces.ICallable;
-import com.lang.elox.representation.interfaces.IIndexable;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.representation.interfaces.INativeCallable;
 import com.lang.elox.representation.interfaces.StmtVisitor;
 import com.lang.elox.representation.parsetime.Expr;
 import com.lang.elox.representation.parsetime.Stmt;
-import com.lang.elox.representation.runtime.classes.*;
 import com.lang.elox.representation.runtime.instances.*;
 import com.lang.elox.utils.ErrorReporter;
 import com.lang.elox.utils.Importer;
@@ -20,12 +23,24 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void> {
+public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Object> {
   private final ErrorReporter reporter;
   private Importer importer;
   private Environment globals = new Environment();
   private Environment environment = globals;
-  private Map<Expr, Integer> locals = new HashMap<>();
+  private final FrameStack frames = new FrameStack();
+  private Jit jit;
+
+  // Arithmetic subtrees are evaluated on primitives. evaluateNumber leaves
+  // its result in one of the fields below and returns the kind telling which
+  // one, so a value is boxed only once it leaves the subtree.
+  private static final int OBJECT = 0;
+  private static final int INT = 1;
+  private static final int DOUBLE = 2;
+
+  private int intValue;
+  private double doubleValue;
+  private Object objectValue;
 
   public Interpreter(ErrorReporter reporter) {
     this.reporter = reporter;
@@ -37,8 +52,8 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
       }
 
       @Override
-      public Object call(Interpreter interpreter, List<Object> arguments) {
-        System.out.print(arguments.get(0));
+      public Object call(Interpreter interpreter, Object... arguments) {
+        System.out.print(arguments[0]);
         return null;
       }
 
@@ -55,7 +70,7 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
       }
 
       @Override
-      public Object call(Interpreter interpreter, List<Object> arguments) {
+      public Object call(Interpreter interpreter, Object... arguments) {
         return (double) System.currentTimeMillis() / 1000.0;
       }
 
@@ -72,8 +87,8 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
       }
 
       @Override
-      public Object call(Interpreter interpreter, List<Object> arguments) {
-        System.out.println(arguments.get(0));
+      public Object call(Interpreter interpreter, Object... arguments) {
+        System.out.println(arguments[0]);
         return null;
       }
 
@@ -84,14 +99,36 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
     });
   }
 
-  public Map<Expr, Integer> getLocals() {
-    return locals;
-  }
-
   public Environment getEnvironment() {
     return environment;
   }
 
+  public FrameStack getFrames() {
+    return frames;
+  }
+
+  public Environment getGlobals() {
+    return globals;
+  }
+
+  public void enableJit(int callThreshold, int loopThreshold) {
+    jit = new Jit(this, callThreshold, loopThreshold);
+  }
+
+  public Jit getJit() {
+    return jit;
+  }
+
+  // compiled form of a function body once it got hot, null while it should
+  // still be interpreted
+  public CompiledCode compiled(Stmt.Function declaration) {
+    return jit == null ? null : jit.onCall(declaration);
+  }
+
+  public CompiledCode compiled(Expr.Lambda declaration) {
+    return jit == null ? null : jit.onCall(declaration);
+  }
+
   public void interpret(List<Stmt> statements, String filename) {
     try {
       importer = new Importer(this, reporter, filename);// FIXME: 1/26/19 is it a right place for importer?
@@ -107,18 +144,15 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
     }
   }
 
-  public void resolve(Expr expr, int depth) {
-    locals.put(expr, depth);
-  }
-
   // overrides
 
   @Override
   public Object visit(Expr.Super expr) {
-    int distance = locals.get(expr);
-    TClass superclass = (TClass) environment.getAt(distance, "super");
-    TInstance object = (TInstance) environment.getAt(distance - 1, "this");
-    TFunction method = superclass.findMethod(object, expr.method.lexeme);
+    TClass superclass = (TClass) environment.getUpvalue(expr.upvalue);
+    TInstance object = (TInstance) (expr.receiverUpvalue != -1
+        ? environment.getUpvalue(expr.receiverUpvalue)
+        : environment.getAt(expr.depth - 1, expr.slot));
+    IMethod method = superclass.findMethod(object, expr.method.lexeme);
     if (method == null) {
       throw new RuntimeError(expr.method, "Undefined method '" + expr.method.lexeme + "'.");
     }
@@ -128,32 +162,20 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
 
   @Override
   public Object visit(Expr.TypeLiteral expr) {
-    switch (expr.name.lexeme) {
-      case "Object": return new TObjectClass();
-      case "Int": return new TIntClass();
-      case "Double": return new TDoubleClass();
-      case "Boolean": return new TBooleanClass();
-      case "String": return new TStringClass();
-      case "List": return new TListClass();
-      case "Dict": return new TDictClass();
-      case "Function": return new TFunctionClass();
-      case "Lambda": return new TLambdaClass();
-      default:
-        throw new RuntimeError(expr.name, "Undefined type '" + expr.name.lexeme + "'.");
-    }
+    return Operations.typeLiteral(expr.name);
   }
 
   @Override
-  public Void visit(Stmt.Throw stmt) {
+  public Object visit(Stmt.Throw stmt) {
     throw new TException(stmt.token, evaluate(stmt.expr));
   }
 
   @Override
-  public Void visit(Stmt.Import stmt) {
-    TModule module = importer.buildModule((String) stmt.name.literal, stmt.statements);
+  public Object visit(Stmt.Import stmt) {
+    TModule module = importer.buildModule(stmt);
     if (module == null) throw new RuntimeError(stmt.name, "Error while importing file.");
-    importer.importAll(module, environment);
-    return null;
+    importer.importAll(module, globals);
+    return Completion.NORMAL;
   }
 
   @Override
@@ -161,46 +183,14 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
     Object object = evaluate(expr.object);
     Object index = evaluate(expr.index);
     Object value = evaluate(expr.value);
-
-    if (object == null)
-      throw new RuntimeError(expr.token, "Null pointer exception.");
-    if (!(object instanceof IIndexable))
-      throw new RuntimeError(expr.token, "Object is not indexable.");
-
-    if (object instanceof TList) {
-      TList var1 = (TList) object;
-      validateListKey(expr.token, var1, index);
-      var1.set((int) index, value);
-    } else if (object instanceof TDict) {
-      validateDictKey(expr.token, index);
-      TDict var1 = (TDict) object;
-      var1.set(index, value);
-    }
-
-    return value;
+    return Operations.indexSet(expr.token, object, index, value);
   }
 
   @Override
   public Object visit(Expr.IndexGet expr) {
     Object object = evaluate(expr.object);
     Object index = evaluate(expr.index);
-
-    if (!(object instanceof IIndexable))
-      throw new RuntimeError(expr.token, "Only lists/dicts are indexable.");
-
-    if (object instanceof TList) {
-      TList var1 = (TList) object;
-      validateListKey(expr.token, var1, index);
-      return var1.index((int) index);
-    } else if (object instanceof TDict) {
-      validateDictKey(expr.token, index);
-      TDict var1  = (TDict) object;
-      if (!var1.contains(index))
-        throw new RuntimeError(expr.token, "No such key '" + index + "'.");
-      return var1.index(index);
-    } else {
-      throw new RuntimeError(expr.token, "Only lists/dicts are indexable.");
-    }
+    return Operations.indexGet(expr.token, object, index);
   }
 
   @Override
@@ -209,11 +199,7 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
     for (Map.Entry<Expr, Expr> entry : expr.map.entrySet()) {
       Object key = evaluate(entry.getKey());
       Object value = evaluate(entry.getValue());
-
-      if (!(key instanceof TString) && !(key instanceof Integer) && !(key instanceof Double)) {
-        throw new RuntimeError(expr.paren, "Dictionary supports only string/integer/double keys.");
-      }
-
+      Operations.validateDictKey(expr.paren, key);
       map.put(key, value);
     }
 
@@ -232,7 +218,8 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
 
   @Override
   public Object visit(Expr.This expr) {
-    return lookUpVariable(expr.keyword, expr);
+    if (expr.upvalue != -1) return environment.getUpvalue(expr.upvalue);
+    return environment.getAt(expr.depth, expr.slot);
   }
 
   @Override
@@ -249,93 +236,186 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
   }
 
   @Override
-  public Void visit(Stmt.Return stmt) {
+  public Object visit(Stmt.Return stmt) {
     Object value = null;
     if (stmt.value != null) value = evaluate(stmt.value);
-    throw new Return(value);
+    return value;
+  }
+
+  @Override
+  public Object visit(Stmt.Break stmt) {
+    return Completion.BREAK;
+  }
+
+  @Override
+  public Object visit(Stmt.Continue stmt) {
+    return Completion.CONTINUE;
   }
 
   @Override
   public Object visit(Expr.Lambda expr) {
-    return new TLambda(expr, environment);
+    return TLambda.of(expr, environment);
   }
 
   @Override
-  public Void visit(Stmt.Try stmt) {
+  public Object visit(Stmt.Try stmt) {
     try {
-      executeBlock(stmt.tryStmt, new Environment(environment));
+      return executeBlock(stmt.tryStmt, frame(stmt.tryFrameSize, stmt.tryBoxedSlots));
     } catch (RuntimeError e) {
-      Environment environment = new Environment(this.environment);
-      environment.define(stmt.parameter.lexeme, new TException(e));
-      executeBlock(stmt.catchStmt, environment);
+      return executeBlock(stmt.catchStmt, catchFrame(stmt, new TException(e)));
     } catch (TException e) {
-      Environment environment = new Environment(this.environment);
-      environment.define(stmt.parameter.lexeme, e.getValue());
-      executeBlock(stmt.catchStmt, environment);
+      return executeBlock(stmt.catchStmt, catchFrame(stmt, e.getValue()));
     }
+  }
+
+  private Environment catchFrame(Stmt.Try stmt, Object exception) {
+    Environment environment = new Environment(this.environment, stmt.catchFrameSize);
+    environment.define(0, exception);
+    if (stmt.catchBoxedSlots != null) environment.box(stmt.catchBoxedSlots);
+    return environment;
+  }
 
-    return null;
+  @Override
+  public Object visit(Stmt.Function stmt) {
+    TFunction function = new TFunction(stmt, environment.capture(stmt.captureDepths, stmt.captureSlots), false);
+    define(stmt.name, stmt.slot, stmt.boxed, function);
+    return Completion.NORMAL;
   }
 
   @Override
-  public Void visit(Stmt.Function stmt) {
-    TFunction function = new TFunction(stmt, environment, false);
-    environment.define(stmt.name.lexeme, function);
-    return null;
+  public Object visit(Stmt.While stmt) {
+    if (stmt.compiled != null) return stmt.compiled.execute(environment);
+
+    while (Operations.isTruthy(evaluate(stmt.condition))) {
+      Object completion = execute(stmt.body);
+      if (completion != Completion.NORMAL) {
+        if (completion == Completion.BREAK) break;
+        if (completion != Completion.CONTINUE) return completion;
+      }
+      if (stmt.increment != null) evaluate(stmt.increment);
+
+      // the compiled loop continues from the next condition check
+      if (jit != null && jit.onBackEdge(stmt) != null) return stmt.compiled.execute(environment);
+    }
+
+    return Completion.NORMAL;
   }
 
   @Override
-  public Void visit(Stmt.While stmt) {
-    while (isTruthy(evaluate(stmt.condition))) {
-      execute(stmt.body);
+  public Object visit(Stmt.For stmt) {
+    if (stmt.frameSize == 0) {
+      if (stmt.initializer != null) execute(stmt.initializer);
+      return execute(stmt.loop);
     }
 
-    return null;
+    Environment previous = environment;
+    try {
+      environment = frame(stmt.frameSize, stmt.boxedSlots);
+      execute(stmt.initializer);
+      return stmt.counter != -1 ? countedLoop(stmt) : execute(stmt.loop);
+    } finally {
+      environment = previous;
+    }
+  }
+
+  // Runs the loop of a for with a counter, which is compared and stepped
+  // in place while it holds an int. Anything else, including a counter the
+  // body sets to another type, goes through the loop's own expressions.
+  private Object countedLoop(Stmt.For stmt) {
+    Stmt.While loop = stmt.loop;
+    if (loop.compiled != null) return loop.compiled.execute(environment);
+
+    Expr.Binary condition = (Expr.Binary) loop.condition;
+    Environment frame = environment;
+    while (counterTest(condition, frame.getAt(0, stmt.counter))) {
+      Object completion = execute(loop.body);
+      if (completion != Completion.NORMAL) {
+        if (completion == Completion.BREAK) break;
+        if (completion != Completion.CONTINUE) return completion;
+      }
+
+      Object counter = frame.getAt(0, stmt.counter);
+      if (counter instanceof Integer) {
+        frame.define(stmt.counter, (int) counter + stmt.step);
+      } else {
+        evaluate(loop.increment);
+      }
+
+      if (jit != null && jit.onBackEdge(loop) != null) return loop.compiled.execute(environment);
+    }
+
+    return Completion.NORMAL;
+  }
+
+  private boolean counterTest(Expr.Binary condition, Object counter) {
+    if (!(counter instanceof Integer)) return Operations.isTruthy(evaluate(condition));
+
+    int kind = evaluateNumber(condition.right);
+    if (kind != INT) return Operations.isTruthy(Operations.binary(condition.operator, counter, box(kind)));
+
+    int value = (int) counter;
+    switch (condition.operator.type) {
+      case LESS: return value < intValue;
+      case LESS_EQUAL: return value <= intValue;
+      case GREATER: return value > intValue;
+      default: return value >= intValue;
+    }
   }
 
   @Override
-  public Void visit(Stmt.If stmt) {
-    if (isTruthy(evaluate(stmt.condition))) {
-      execute(stmt.thenBranch);
+  public Object visit(Stmt.If stmt) {
+    if (Operations.isTruthy(evaluate(stmt.condition))) {
+      return execute(stmt.thenBranch);
     } else if (stmt.elseBranch != null) {
-      execute(stmt.elseBranch);
+      return execute(stmt.elseBranch);
     }
 
-    return null;
+    return Completion.NORMAL;
   }
 
   @Override
-  public Void visit(Stmt.Block stmt) {
-    executeBlock(stmt.statements, new Environment(environment));
-    return null;
+  public Object visit(Stmt.Block stmt) {
+    if (stmt.frameSize == 0) return executeBlock(stmt.statements, environment);
+    return executeBlock(stmt.statements, frame(stmt.frameSize, stmt.boxedSlots));
+  }
+
+  // a frame for a block of the current one
+  private Environment frame(int size, int[] boxedSlots) {
+    Environment frame = new Environment(environment, size);
+    if (boxedSlots != null) frame.box(boxedSlots);
+    return frame;
   }
 
   @Override
-  public Void visit(Stmt.Var stmt) {
+  public Object visit(Stmt.Var stmt) {
     Object value = null;
     if (stmt.initializer != null) {
       value = evaluate(stmt.initializer);
     }
 
-    environment.define(stmt.name.lexeme, value);
-    return null;
+    define(stmt.name, stmt.slot, stmt.boxed, value);
+    return Completion.NORMAL;
   }
 
   @Override
-  public Void visit(Stmt.Expression stmt) {
+  public Object visit(Stmt.Expression stmt) {
     evaluate(stmt.expression);
-    return null;
+    return Completion.NORMAL;
   }
 
   @Override
   public Object visit(Expr.Assign expr) {
     Object value = evaluate(expr.value);
 
-    Integer distance = locals.get(expr);
-    if (distance != null) {
-      environment.assignAt(distance, expr.name, value);
+    if (expr.upvalue != -1) {
+      environment.assignBoxedUpvalue(expr.upvalue, value);
+    } else if (expr.boxed) {
+      environment.assignBoxedAt(expr.depth, expr.slot, value);
+    } else if (expr.depth != -1) {
+      environment.assignAt(expr.depth, expr.slot, value);
     } else {
-      globals.assign(expr.name, value);
+      if (expr.cell == null) expr.cell = globals.cell(expr.name.lexeme);
+      globals.assign(expr.cell, expr.name, value);
     }
 
     return value;
@@ -345,34 +425,12 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
   @Override
   public Object visit(Expr.Get expr) {
     Object object = evaluate(expr.object);
-    if (object == null)
-      throw new RuntimeError(expr.name, "Null pointer exception.");
-
-    if (object instanceof TInstance) {
-      return ((TInstance) object).get(expr.name);
-    }
-
-    if (object instanceof TString) {
-      return ((TString) object).get(expr.name);
-    }
-
-    if (object instanceof TList) {
-      return ((TList) object).get(expr.name);
-    }
-
-    if (object instanceof TDict) {
-      return ((TDict) object).get(expr.name);
-    }
-
-    if (object instanceof Type) {
-      return ((Type) object).get(expr.name);
-    }
-
-    throw new RuntimeError(expr.name,"Error: '" + object + "' can't have properties.");
+    if (expr.cache == null) expr.cache = new InlineCache.Property(expr.name);
+    return expr.cache.get(object);
   }
 
   @Override
-  public Void visit(Stmt.Class stmt) {
+  public Object visit(Stmt.Class stmt) {
     Object superclass = null;
     if (stmt.superclass != null) {
       superclass = evaluate(stmt.superclass);
@@ -381,42 +439,40 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
       }
     }
 
-    environment.define(stmt.name.lexeme, null);
+    define(stmt.name, stmt.slot, stmt.boxed, null);
 
     if (stmt.superclass != null) {
-      environment = new Environment(environment);
-      environment.define("super", superclass);
+      environment = new Environment(environment, 1);
+      environment.define(0, superclass);
     }
 
-    Map<String, TFunction> methods = new HashMap<>();
+    Map<String, IMethod> methods = new HashMap<>();
     for (Stmt.Function method : stmt.methods) {
-      TFunction function = new TFunction(method, environment, method.name.lexeme.equals("this"));
+      Object[] upvalues = environment.capture(method.captureDepths, method.captureSlots);
+      TFunction function = new TFunction(method, upvalues, method.name.lexeme.equals("__init__"));
       methods.put(method.name.lexeme, function);
     }
 
     TClass clazz = new TClass(stmt.name.lexeme, (TClass) superclass, methods);
     if (superclass != null) environment = environment.getEnclosing();
-    environment.assign(stmt.name, clazz);
-    return null;
+    define(stmt.name, stmt.slot, stmt.boxed, clazz);
+    return Completion.NORMAL;
   }
 
   @Override
   public Object visit(Expr.Instance expr) {
     Object callee = evaluate(expr.clazz);
-    List<Object> arguments = new ArrayList<>();
-    for (Expr argument : expr.arguments) {
-      arguments.add(evaluate(argument));
-    }
+    Object[] arguments = evaluateArguments(expr.arguments);
 
     if (!(callee instanceof TClass)) {
       throw new RuntimeError(expr.paren, "Can't construct object from non-class.");
     }
 
     ICallable clazz = (ICallable) callee;
-    if (arguments.size() != clazz.arity()) {
+    if (arguments.length != clazz.arity()) {
       throw new RuntimeError(expr.paren, "Expected " +
           clazz.arity() + " arguments to constructor but got " +
-          arguments.size() + ".");
+          arguments.length + ".");
     }
 
     return clazz.call(this, arguments);
@@ -425,47 +481,79 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
   @Override
   public Object visit(Expr.Call expr) {
     Object callee = evaluate(expr.callee);
-    List<Object> arguments = new ArrayList<>();
-    for (Expr argument : expr.arguments) {
-      arguments.add(evaluate(argument));
-    }
+    if (expr.tailCall) return tailCall(expr.paren, callee, expr.arguments);
+    return call(expr.paren, callee, expr.arguments);
+  }
 
-    if (!(callee instanceof ICallable))
-      throw new RuntimeError(expr.paren, "Can call only functions.");
-    if (callee instanceof TClass)
-      throw new RuntimeError(expr.paren, "Can't instantiate without 'new'.");
+  private Object tailCall(Token paren, Object callee, List<Expr> arguments) {
+    Object[] values = evaluateArguments(arguments);
+    return TailCall.of(this, Operations.callable(paren, callee, values.length), values);
+  }
 
-    ICallable function = (ICallable) callee;
-    if (arguments.size() != function.arity()) {
-      throw new RuntimeError(expr.paren, "Expected " +
-          function.arity() + " arguments but got " +
-          arguments.size() + ".");
+  // evaluates the arguments and calls the callee, calls with up to three
+  // arguments go through the fixed-arity variants and build no array
+  private Object call(Token paren, Object callee, List<Expr> arguments) {
+    switch (arguments.size()) {
+      case 0:
+        return Operations.callable(paren, callee, 0).call0(this);
+      case 1: {
+        Object first = evaluate(arguments.get(0));
+        return Operations.callable(paren, callee, 1).call1(this, first);
+      }
+      case 2: {
+        Object first = evaluate(arguments.get(0));
+        Object second = evaluate(arguments.get(1));
+        return Operations.callable(paren, callee, 2).call2(this, first, second);
+      }
+      case 3: {
+        Object first = evaluate(arguments.get(0));
+        Object second = evaluate(arguments.get(1));
+        Object third = evaluate(arguments.get(2));
+        return Operations.callable(paren, callee, 3).call3(this, first, second, third);
+      }
+      default: {
+        Object[] values = evaluateArguments(arguments);
+        return Operations.callable(paren, callee, values.length).call(this, values);
+      }
+    }
+  }
+
+  private Object[] evaluateArguments(List<Expr> arguments) {
+    Object[] values = new Object[arguments.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = evaluate(arguments.get(i));
     }
-    return function.call(this, arguments);
+    return values;
   }
 
   @Override
-  public Object visit(Expr.Unary expr) {
-    Object right = evaluate(expr.right);
+  public Object visit(Expr.Invoke expr) {
+    Object object = evaluate(expr.object);
+    if (expr.cache == null) expr.cache = new InlineCache.Property(expr.name);
+    // methods run on the receiver directly, anything else is read and called
+    IMethod method = expr.cache.method(object);
+    INativeCallable<Object> nativeMethod = method == null ? expr.cache.nativeMethod(object) : null;
+    if (method == null && nativeMethod == null) {
+      Object callee = expr.cache.get(object);
+      if (expr.tailCall) return tailCall(expr.paren, callee, expr.arguments);
+      return call(expr.paren, callee, expr.arguments);
+    }
 
-    switch (expr.operator.type) {
-      case NOT:
-        return !isTruthy(right);
-      case MINUS: {
-        if (checkInts(right))
-          return - (int) right;
-        else if (checkIntDoubles(right))
-          return - (double) right;
-        else error(expr.operator, "Operands must be integer.");
-      }
-      case BIT_COMPL: {
-        if (checkInts(right))
-          return ~ (int) right;
-        else error(expr.operator, "Operand must be integer.");
-      }
+    Object[] arguments = evaluateArguments(expr.arguments);
+    if (method != null) {
+      Operations.checkArity(expr.paren, method.arity(), arguments.length);
+      if (expr.tailCall) return TailCall.of(this, method, (TInstance) object, arguments);
+      return method.invoke(this, (TInstance) object, arguments);
     }
 
-    return null;
+    Operations.checkArity(expr.paren, nativeMethod.arity(), arguments.length);
+    return nativeMethod.call(this, object, expr.name, arguments);
+  }
+
+  @Override
+  public Object visit(Expr.Unary expr) {
+    if (expr.operator.type == TokenType.NOT) return !Operations.isTruthy(evaluate(expr.right));
+    return box(unaryNumber(expr));
   }
 
   @Override
@@ -475,146 +563,12 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
 
   @Override
   public Object visit(Expr.Binary expr) {
+    if (isArithmetic(expr.operator.type)) return box(binaryNumber(expr));
+    if (isComparison(expr.operator.type)) return compare(expr);
+
     Object left = evaluate(expr.left);
     Object right = evaluate(expr.right);
-
-    switch (expr.operator.type) {
-      case BIT_OR: {
-        if (checkInts(left, right))
-          return (int) left | (int) right;
-        else error(expr.operator, "Invalid operands for '|' : '" + left + "' and '" + right + "'.");
-      }
-      case BIT_XOR: {
-        if (checkInts(left, right))
-          return (int) left ^ (int) right;
-        else error(expr.operator, "Invalid operands for '^' : '" + left + "' and '" + right + "'.");
-      }
-      case BIT_LEFT: {
-        if (checkInts(left, right))
-          return (int) left << (int) right;
-        else error(expr.operator, "Invalid operands for '<<' : '" + left + "' and '" + right + "'.");
-      }
-      case BIT_RIGHT: {
-        if (checkInts(left, right))
-          return (int) left >> (int) right;
-        else error(expr.operator, "Invalid operands for '>>' : '" + left + "' and '" + right + "'.");
-      }
-      case BIT_AND: {
-        if (checkInts(left, right))
-          return (int) left & (int) right;
-        else error(expr.operator, "Invalid operands to '&' : '" + left + "' and '" + right + "'.");
-      }
-      case NOT_EQUAL:
-        return !isEqual(left, right);
-      case EQUAL_EQUAL:
-        return isEqual(left, right);
-      case IS:
-        if (left == null || !isType(right))
-          throw new RuntimeError(expr.operator, "Invalid arguments to 'is'.");
-        if (left instanceof TClass)
-          throw new RuntimeError(expr.operator, "Invalid argument to IS: 'Class'.");
-        if (left instanceof  Boolean && right instanceof TBooleanClass) return true;
-        if (left instanceof Integer && right instanceof TIntClass) return true;
-        if (left instanceof Double && right instanceof TDoubleClass) return true;
-        if (left instanceof TInstance && right instanceof TClass)
-          return isInstance(left, right);
-        return right.getClass().isInstance(left);
-
-      // #TODO fix garbage here
-      case GREATER:{
-        if (left instanceof TString && right instanceof TString)
-          return ((TString) left).string().compareTo(((TString) right).string()) > 0;
-        if (checkInts(left, right)) return (int) left > (int) right;
-        else if (checkIntDoubles(left, right)) {
-          if (left instanceof Integer) left = ((Integer) left).doubleValue();
-          if (right instanceof Integer) right = ((Integer) right).doubleValue();
-          return (double) left > (double) right;
-        } else error(expr.operator, "Invalid operands for '>' : '" + left + "' and '" + right + "'.");
-      }
-      case GREATER_EQUAL: {
-        if (left instanceof TString && right instanceof TString)
-          return ((TString) left).string().compareTo(((TString) right).string()) >= 0;
-        if (checkInts(left, right)) return (int) left >= (int) right;
-        else if (checkIntDoubles(left, right)) {
-          if (left instanceof Integer) left = ((Integer) left).doubleValue();
-          if (right instanceof Integer) right = ((Integer) right).doubleValue();
-          return (double) left >= (double) right;
-        } else error(expr.operator, "Invalid operands for '>=' : '" + left + "' and '" + right + "'.");
-      }
-      case LESS: {
-        if (left instanceof TString && right instanceof TString)
-          return ((TString) left).string().compareTo(((TString) right).string()) < 0;
-        if (checkInts(left, right)) return (int) left < (int) right;
-        else if (checkIntDoubles(left, right)) {
-          if (left instanceof Integer) left = ((Integer) left).doubleValue();
-          if (right instanceof Integer) right = ((Integer) right).doubleValue();
-          return (double) left < (double) right;
-        } else error(expr.operator, "Invalid operands for '<' : '" + left + "' and '" + right + "'.");
-      }
-      case LESS_EQUAL: {
-        if (left instanceof TString && right instanceof TString)
-          return ((TString) left).string().compareTo(((TString) right).string()) <= 0;
-        if (checkInts(left, right)) return (int) left <= (int) right;
-        else if (checkIntDoubles(left, right)) {
-          if (left instanceof Integer) left = ((Integer) left).doubleValue();
-          if (right instanceof Integer) right = ((Integer) right).doubleValue();
-          return (double) left <= (double) right;
-        } else error(expr.operator, "Invalid operands for '<=' : '" + left + "' and '" + right + "'.");
-      }
-      case PLUS: {
-        if (left instanceof TList && right instanceof TList) {
-          ((TList) left).assign((TList) right);
-          return left;
-        }
-        if (left instanceof TString && right instanceof TString)
-          return new TString(((TString) left).string() + ((TString) right).string());
-        if (left instanceof TString || right instanceof TString) {
-          return new TString(left.toString() + right.toString());
-        }
-
-        if (checkInts(left, right))
-          return (int) left + (int) right;
-        else if (checkIntDoubles(left, right)) {
-          if (left instanceof Integer) left = ((Integer) left).doubleValue();
-          if (right instanceof Integer) right = ((Integer) right).doubleValue();
-          return (double) left + (double) right;
-        } else error(expr.operator, "Invalid operands for '+' : '" + left + "' and '" + right + "'.");
-      }
-      case MINUS: {
-        if (checkInts(left, right))
-          return (int) left - (int) right;
-        else if (checkIntDoubles(left, right)) {
-          if (left instanceof Integer) left = ((Integer) left).doubleValue();
-          if (right instanceof Integer) right = ((Integer) right).doubleValue();
-          return (double) left - (double) right;
-        } else error(expr.operator, "Invalid operands for '-' : '" + left + "' and '" + right + "'.");
-      }
-      case STAR: {
-        if (checkInts(left, right))
-          return (int) left * (int) right;
-        else if (checkIntDoubles(left, right)) {
-          if (left instanceof Integer) left = ((Integer) left).doubleValue();
-          if (right instanceof Integer) right = ((Integer) right).doubleValue();
-          return (double) left * (double) right;
-        } else error(expr.operator, "Invalid operands for '*' : '" + left + "' and '" + right + "'.");
-      }
-      case SLASH: {
-        if (checkInts(left, right))
-          return (int) left / (int) right;
-        else if (checkIntDoubles(left, right)) {
-          if (left instanceof Integer) left = ((Integer) left).doubleValue();
-          if (right instanceof Integer) right = ((Integer) right).doubleValue();
-          return (double) left / (double) right;
-        } else error(expr.operator, "Invalid operands for '/' : '" + left + "' and '" + right + "'.");
-      }
-      case REMAINDER: {
-        if (checkInts(left, right))
-          return (int) left % (int) right;
-        else error(expr.operator, "Invalid operands for '%' : '" + left + "' and '" + right + "'.");
-      }
-    }
-
-    return null;
+    return Operations.binary(expr.operator, left, right);
   }
 
   @Override
@@ -625,135 +579,240 @@ public final class Interpreter implements ExprVisitor<Object>, StmtVisitor<Void>
   @Override
   public Object visit(Expr.Logical expr) {
     Object left = evaluate(expr.left);
-    Object right = evaluate(expr.right);
-
-    switch (expr.operator.type) {
-      case OR:
-        return isTruthy(left) ? left : right;
-      case AND:
-        return !isTruthy(left) ? left : right;
-    }
-
-    return null;
+    boolean decided = expr.operator.type == TokenType.OR ? Operations.isTruthy(left) : !Operations.isTruthy(left);
+    return decided ? left : evaluate(expr.right);
   }
 
   @Override
   public Object visit(Expr.Variable expr) {
-    return lookUpVariable(expr.name, expr);
+    if (expr.depth != -1) {
+      return local(expr);
+    } else {
+      if (expr.cell == null) expr.cell = globals.cell(expr.name.lexeme);
+      return globals.get(expr.cell, expr.name);
+    }
+  }
+
+  // a local of the current function or one its closure captured
+  private Object local(Expr.Variable expr) {
+    if (expr.upvalue != -1) {
+      return expr.boxed ? environment.getBoxedUpvalue(expr.upvalue) : environment.getUpvalue(expr.upvalue);
+    }
+    return expr.boxed ? environment.getBoxedAt(expr.depth, expr.slot) : environment.getAt(expr.depth, expr.slot);
   }
 
-  private Object lookUpVariable(Token name, Expr expr) {
-    Integer distance = locals.get(expr);
-    if (distance != null) {
-      return environment.getAt(distance, name.lexeme);
+  private void define(Token name, int slot, boolean boxed, Object value) {
+    if (boxed) {
+      environment.defineBoxed(slot, value);
+    } else if (slot != -1) {
+      environment.define(slot, value);
     } else {
-      return globals.get(name);
+      environment.define(name.lexeme, value);
     }
   }
 
   @Override
   public Object visit(Expr.StringLiteral expr) {
-    return new TString(expr.value);
+    return expr.constant;
   }
 
+  // Dispatches on the node kind rather than through accept, so each call
+  // below is a direct call HotSpot can inline into the switch.
+  // Expressions keep double dispatch: one switch over every expression kind
+  // makes evaluate too large for HotSpot to inline into its recursive
+  // callers, which measured slower than the accept call it replaces.
   private Object evaluate(Expr expr) {
     return expr.accept(this);
   }
 
-  private void execute(Stmt stmt) {
-    stmt.accept(this);
-  }
+  // primitive evaluation
 
-  public void executeBlock(List<Stmt> statements, Environment environment) {
-    Environment previous = this.environment;
-    try {
-      this.environment = environment;
-      statements.forEach(this::execute);
-    } finally {
-      this.environment = previous;
+  private int evaluateNumber(Expr expr) {
+    switch (expr.kind) {
+      case Expr.VARIABLE: {
+        Expr.Variable variable = (Expr.Variable) expr;
+        if (variable.depth != -1) return tag(local(variable));
+        break;
+      }
+      case Expr.LITERAL:
+        return tag(((Expr.Literal) expr).value);
+      case Expr.BINARY: {
+        Expr.Binary binary = (Expr.Binary) expr;
+        if (isArithmetic(binary.operator.type)) return binaryNumber(binary);
+        break;
+      }
+      case Expr.UNARY: {
+        Expr.Unary unary = (Expr.Unary) expr;
+        if (unary.operator.type != TokenType.NOT) return unaryNumber(unary);
+        break;
+      }
+      case Expr.GROUPING:
+        return evaluateNumber(((Expr.Grouping) expr).expr);
+    }
+
+    return tag(evaluate(expr));
+  }
+
+  private int binaryNumber(Expr.Binary expr) {
+    int leftKind = evaluateNumber(expr.left);
+    int leftInt = intValue;
+    double leftDouble = doubleValue;
+    Object leftObject = objectValue;
+    int rightKind = evaluateNumber(expr.right);
+
+    if (leftKind == INT && rightKind == INT) {
+      int right = intValue;
+      switch (expr.operator.type) {
+        case PLUS: intValue = leftInt + right; return INT;
+        case MINUS: intValue = leftInt - right; return INT;
+        case STAR: intValue = leftInt * right; return INT;
+        case SLASH: intValue = leftInt / right; return INT;
+        case REMAINDER: intValue = leftInt % right; return INT;
+        case BIT_OR: intValue = leftInt | right; return INT;
+        case BIT_XOR: intValue = leftInt ^ right; return INT;
+        case BIT_AND: intValue = leftInt & right; return INT;
+        case BIT_LEFT: intValue = leftInt << right; return INT;
+        case BIT_RIGHT: intValue = leftInt >> right; return INT;
+      }
+    } else if (leftKind != OBJECT && rightKind != OBJECT) {
+      double left = leftKind == INT ? leftInt : leftDouble;
+      double right = rightKind == INT ? intValue : doubleValue;
+      switch (expr.operator.type) {
+        case PLUS: doubleValue = left + right; return DOUBLE;
+        case MINUS: doubleValue = left - right; return DOUBLE;
+        case STAR: doubleValue = left * right; return DOUBLE;
+        case SLASH: doubleValue = left / right; return DOUBLE;
+      }
     }
-  }
 
-  private boolean isTruthy(Object a) {
-    if (a == null) return false;
-    if (a instanceof Boolean) return (boolean) a;
-    return true;
+    // strings, lists and invalid operands take the generic path
+    Object left = box(leftKind, leftInt, leftDouble, leftObject);
+    Object right = box(rightKind);
+    return tag(Operations.binary(expr.operator, left, right));
   }
 
-  private boolean isEqual(Object a, Object b) {
-    if (a == null && b == null) return true;
-    if (a == null) return false;
-    return a.equals(b);
-  }
-
-  private void validateDictKey(Token token, Object key) {
-    if (!(key instanceof TString) && !(key instanceof Integer) && !(key instanceof Double)) {
-      throw new RuntimeError(token, "Dictionary supports only string/integer/double keys.");
+  private int unaryNumber(Expr.Unary expr) {
+    int kind = evaluateNumber(expr.right);
+    if (kind == INT) {
+      intValue = expr.operator.type == TokenType.MINUS ? -intValue : ~intValue;
+      return INT;
+    }
+    if (kind == DOUBLE && expr.operator.type == TokenType.MINUS) {
+      doubleValue = -doubleValue;
+      return DOUBLE;
     }
-  }
 
-  private void validateListKey(Token token, TList object, Object key) {
-    if (!(key instanceof Integer))
-      throw new RuntimeError(token, "Integer index expected.");
-    int var2 = (int) key, len = object.size();
-    if (var2 < 0 || var2 >= len)
-      throw new RuntimeError(token, "Index is out of range.");
+    return tag(Operations.unary(expr.operator, box(kind)));
   }
 
-  private void error(Token operator, String message) {
-    throw new RuntimeError(operator, message);
-  }
+  private Object compare(Expr.Binary expr) {
+    int leftKind = evaluateNumber(expr.left);
+    int leftInt = intValue;
+    double leftDouble = doubleValue;
+    Object leftObject = objectValue;
+    int rightKind = evaluateNumber(expr.right);
 
-  private boolean isDoubleInteger(Object o) {
-    return o instanceof Double || o instanceof Integer;
-  }
-
-  private boolean checkIntDoubles(Object... objects) {
-    for (Object o : objects) {
-      if (!isDoubleInteger(o)) return false;
+    if (leftKind == INT && rightKind == INT) {
+      int right = intValue;
+      switch (expr.operator.type) {
+        case GREATER: return leftInt > right;
+        case GREATER_EQUAL: return leftInt >= right;
+        case LESS: return leftInt < right;
+        case LESS_EQUAL: return leftInt <= right;
+      }
+    } else if (leftKind != OBJECT && rightKind != OBJECT) {
+      double left = leftKind == INT ? leftInt : leftDouble;
+      double right = rightKind == INT ? intValue : doubleValue;
+      switch (expr.operator.type) {
+        case GREATER: return left > right;
+        case GREATER_EQUAL: return left >= right;
+        case LESS: return left < right;
+        case LESS_EQUAL: return left <= right;
+      }
     }
 
-    return true;
+    Object left = box(leftKind, leftInt, leftDouble, leftObject);
+    return Operations.binary(expr.operator, left, box(rightKind));
   }
 
-  private boolean checkInts(Object... objects) {
-    for (Object o : objects) {
-      if (!(o instanceof Integer)) return false;
+  private int tag(Object value) {
+    if (value instanceof Integer) {
+      intValue = (int) value;
+      return INT;
+    }
+    if (value instanceof Double) {
+      doubleValue = (double) value;
+      return DOUBLE;
     }
 
-    return true;
+    objectValue = value;
+    return OBJECT;
   }
 
-  private boolean isType(Object object) {
-    if (object instanceof TIntClass ||
-        object instanceof TDoubleClass ||
-        object instanceof TBooleanClass ||
-        object instanceof TStringClass ||
-        object instanceof TObjectClass ||
-        object instanceof TListClass ||
-        object instanceof TLambdaClass ||
-        object instanceof TFunctionClass ||
-        object instanceof TClass ||
-        object instanceof TDictClass) return true;
-    return false;
+  private Object box(int kind) {
+    return box(kind, intValue, doubleValue, objectValue);
   }
 
-  private boolean isInstance(Object left, Object right) {
-    if (!(right instanceof TClass)) return false;
-    if (!(left instanceof TInstance)) return false;
+  private static Object box(int kind, int intValue, double doubleValue, Object objectValue) {
+    switch (kind) {
+      case INT: return intValue;
+      case DOUBLE: return doubleValue;
+      default: return objectValue;
+    }
+  }
 
-    TClass type = (TClass) right;
-    TClass instanceType = ((TInstance) left).getClazz();
+  private static boolean isArithmetic(TokenType type) {
+    switch (type) {
+      case PLUS: case MINUS: case STAR: case SLASH: case REMAINDER:
+      case BIT_OR: case BIT_XOR: case BIT_AND: case BIT_LEFT: case BIT_RIGHT:
+        return true;
+      default:
+        return false;
+    }
+  }
 
-    if (instanceType.equals(type)) return true;
-    while (instanceType.getSuperclass() != null) {
-      if (instanceType.getSuperclass().equals(type)) {
+  private static boolean isComparison(TokenType type) {
+    switch (type) {
+      case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
         return true;
-      }
+      default:
+        return false;
+    }
+  }
 
-      instanceType = instanceType.getSuperclass();
+  // dispatches on the node kind, so each case is a direct call
+  private Object execute(Stmt stmt) {
+    switch (stmt.kind) {
+      case Stmt.EXPRESSION: return visit((Stmt.Expression) stmt);
+      case Stmt.IF: return visit((Stmt.If) stmt);
+      case Stmt.RETURN: return visit((Stmt.Return) stmt);
+      case Stmt.VAR: return visit((Stmt.Var) stmt);
+      case Stmt.BLOCK: return visit((Stmt.Block) stmt);
+      case Stmt.WHILE: return visit((Stmt.While) stmt);
+      case Stmt.FOR: return visit((Stmt.For) stmt);
+      case Stmt.BREAK: return visit((Stmt.Break) stmt);
+      case Stmt.CONTINUE: return visit((Stmt.Continue) stmt);
+      case Stmt.FUNCTION: return visit((Stmt.Function) stmt);
+      case Stmt.CLASS: return visit((Stmt.Class) stmt);
+      case Stmt.TRY: return visit((Stmt.Try) stmt);
+      case Stmt.THROW: return visit((Stmt.Throw) stmt);
+      case Stmt.IMPORT: return visit((Stmt.Import) stmt);
+      default: return stmt.accept(this);
     }
+  }
 
-    return false;
+  // returns the completion of the first statement that didn't complete normally
+  public Object executeBlock(List<Stmt> statements, Environment environment) {
+    Environment previous = this.environment;
+    try {
+      this.environment = environment;
+      for (Stmt statement : statements) {
+        Object completion = execute(statement);
+        if (completion != Completion.NORMAL) return completion;
+      }
+      return Completion.NORMAL;
+    } finally {
+      this.environment = previous;
+    }
   }
 }
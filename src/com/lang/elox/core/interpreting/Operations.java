@@ -0,0 +1,327 @@
+package com.lang.elox.core.interpreting;
+
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.errors.RuntimeError;
+import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.representation.interfaces.IIndexable;
+import com.lang.elox.representation.interfaces.INativeCallable;
+import com.lang.elox.representation.runtime.classes.*;
+import com.lang.elox.representation.runtime.instances.*;
+
+// Runtime semantics of Elox operators, shared by all execution engines
+
+public final class Operations {
+  private Operations() {}
+
+  public static Object binary(Token operator, Object left, Object right) {
+    switch (operator.type) {
+      case BIT_OR: return bitOr(operator, left, right);
+      case BIT_XOR: return bitXor(operator, left, right);
+      case BIT_LEFT: return shiftLeft(operator, left, right);
+      case BIT_RIGHT: return shiftRight(operator, left, right);
+      case BIT_AND: return bitAnd(operator, left, right);
+      case NOT_EQUAL: return !isEqual(left, right);
+      case EQUAL_EQUAL: return isEqual(left, right);
+      case IS: return is(operator, left, right);
+      case GREATER: return greater(operator, left, right);
+      case GREATER_EQUAL: return greaterEqual(operator, left, right);
+      case LESS: return less(operator, left, right);
+      case LESS_EQUAL: return lessEqual(operator, left, right);
+      case PLUS: return add(operator, left, right);
+      case MINUS: return subtract(operator, left, right);
+      case STAR: return multiply(operator, left, right);
+      case SLASH: return divide(operator, left, right);
+      case REMAINDER: return remainder(operator, left, right);
+    }
+
+    return null;
+  }
+
+  public static Object unary(Token operator, Object right) {
+    switch (operator.type) {
+      case NOT: return !isTruthy(right);
+      case MINUS: return negate(operator, right);
+      case BIT_COMPL: return complement(operator, right);
+    }
+
+    return null;
+  }
+
+  public static Object negate(Token operator, Object right) {
+    if (right instanceof Integer) return - (int) right;
+    if (right instanceof Double) return - (double) right;
+    throw new RuntimeError(operator, "Operands must be integer.");
+  }
+
+  public static Object complement(Token operator, Object right) {
+    if (right instanceof Integer) return ~ (int) right;
+    throw new RuntimeError(operator, "Operand must be integer.");
+  }
+
+  public static Object bitOr(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left | (int) right;
+    throw new RuntimeError(operator, "Invalid operands for '|' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object bitXor(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left ^ (int) right;
+    throw new RuntimeError(operator, "Invalid operands for '^' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object shiftLeft(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left << (int) right;
+    throw new RuntimeError(operator, "Invalid operands for '<<' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object shiftRight(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left >> (int) right;
+    throw new RuntimeError(operator, "Invalid operands for '>>' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object bitAnd(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left & (int) right;
+    throw new RuntimeError(operator, "Invalid operands to '&' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object is(Token operator, Object left, Object right) {
+    if (left == null || !isType(right))
+      throw new RuntimeError(operator, "Invalid arguments to 'is'.");
+    if (left instanceof TClass)
+      throw new RuntimeError(operator, "Invalid argument to IS: 'Class'.");
+    if (right instanceof TClass) return isInstance(left, right);
+    return Types.tagOf(left) == ((Type) right).tag();
+  }
+
+  public static Object greater(Token operator, Object left, Object right) {
+    if (left instanceof TString && right instanceof TString)
+      return ((TString) left).string().compareTo(((TString) right).string()) > 0;
+    if (checkInts(left, right)) return (int) left > (int) right;
+    if (checkIntDoubles(left, right)) return toDouble(left) > toDouble(right);
+    throw new RuntimeError(operator, "Invalid operands for '>' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object greaterEqual(Token operator, Object left, Object right) {
+    if (left instanceof TString && right instanceof TString)
+      return ((TString) left).string().compareTo(((TString) right).string()) >= 0;
+    if (checkInts(left, right)) return (int) left >= (int) right;
+    if (checkIntDoubles(left, right)) return toDouble(left) >= toDouble(right);
+    throw new RuntimeError(operator, "Invalid operands for '>=' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object less(Token operator, Object left, Object right) {
+    if (left instanceof TString && right instanceof TString)
+      return ((TString) left).string().compareTo(((TString) right).string()) < 0;
+    if (checkInts(left, right)) return (int) left < (int) right;
+    if (checkIntDoubles(left, right)) return toDouble(left) < toDouble(right);
+    throw new RuntimeError(operator, "Invalid operands for '<' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object lessEqual(Token operator, Object left, Object right) {
+    if (left instanceof TString && right instanceof TString)
+      return ((TString) left).string().compareTo(((TString) right).string()) <= 0;
+    if (checkInts(left, right)) return (int) left <= (int) right;
+    if (checkIntDoubles(left, right)) return toDouble(left) <= toDouble(right);
+    throw new RuntimeError(operator, "Invalid operands for '<=' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object add(Token operator, Object left, Object right) {
+    if (left instanceof TList && right instanceof TList) {
+      ((TList) left).assign((TList) right);
+      return left;
+    }
+    if (left instanceof TString && right instanceof TString)
+      return new TString(((TString) left).string() + ((TString) right).string());
+    if (left instanceof TString || right instanceof TString) {
+      return new TString(left.toString() + right.toString());
+    }
+
+    if (checkInts(left, right)) return (int) left + (int) right;
+    if (checkIntDoubles(left, right)) return toDouble(left) + toDouble(right);
+    throw new RuntimeError(operator, "Invalid operands for '+' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object subtract(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left - (int) right;
+    if (checkIntDoubles(left, right)) return toDouble(left) - toDouble(right);
+    throw new RuntimeError(operator, "Invalid operands for '-' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object multiply(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left * (int) right;
+    if (checkIntDoubles(left, right)) return toDouble(left) * toDouble(right);
+    throw new RuntimeError(operator, "Invalid operands for '*' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object divide(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left / (int) right;
+    if (checkIntDoubles(left, right)) return toDouble(left) / toDouble(right);
+    throw new RuntimeError(operator, "Invalid operands for '/' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object remainder(Token operator, Object left, Object right) {
+    if (checkInts(left, right)) return (int) left % (int) right;
+    throw new RuntimeError(operator, "Invalid operands for '%' : '" + left + "' and '" + right + "'.");
+  }
+
+  public static Object typeLiteral(Token name) {
+    Type type = Types.named(name.lexeme);
+    if (type == null) throw new RuntimeError(name, "Undefined type '" + name.lexeme + "'.");
+    return type;
+  }
+
+  public static Object getProperty(Token name, Object object) {
+    if (object == null)
+      throw new RuntimeError(name, "Null pointer exception.");
+
+    if (object instanceof TInstance) {
+      return ((TInstance) object).get(name);
+    }
+
+    if (object instanceof TString) {
+      return ((TString) object).get(name);
+    }
+
+    if (object instanceof TList) {
+      return ((TList) object).get(name);
+    }
+
+    if (object instanceof TDict) {
+      return ((TDict) object).get(name);
+    }
+
+    if (object instanceof Type) {
+      return ((Type) object).get(name);
+    }
+
+    throw new RuntimeError(name,"Error: '" + object + "' can't have properties.");
+  }
+
+  // native method of a string, list or dict, null for other values
+  public static INativeCallable<?> nativeMethod(Object object, String name) {
+    if (object instanceof TString) return TStringClass.lookupMethod(name);
+    if (object instanceof TList) return TListClass.lookupMethod(name);
+    if (object instanceof TDict) return TDictClass.lookupMethod(name);
+    return null;
+  }
+
+  public static Object indexGet(Token token, Object object, Object index) {
+    if (!(object instanceof IIndexable))
+      throw new RuntimeError(token, "Only lists/dicts are indexable.");
+
+    if (object instanceof TList) {
+      TList var1 = (TList) object;
+      validateListKey(token, var1, index);
+      return var1.index((int) index);
+    } else if (object instanceof TDict) {
+      validateDictKey(token, index);
+      TDict var1  = (TDict) object;
+      if (!var1.contains(index))
+        throw new RuntimeError(token, "No such key '" + index + "'.");
+      return var1.index(index);
+    } else {
+      throw new RuntimeError(token, "Only lists/dicts are indexable.");
+    }
+  }
+
+  public static Object indexSet(Token token, Object object, Object index, Object value) {
+    if (object == null)
+      throw new RuntimeError(token, "Null pointer exception.");
+    if (!(object instanceof IIndexable))
+      throw new RuntimeError(token, "Object is not indexable.");
+
+    if (object instanceof TList) {
+      TList var1 = (TList) object;
+      validateListKey(token, var1, index);
+      var1.set((int) index, value);
+    } else if (object instanceof TDict) {
+      validateDictKey(token, index);
+      TDict var1 = (TDict) object;
+      var1.set(index, value);
+    }
+
+    return value;
+  }
+
+  public static boolean isTruthy(Object a) {
+    if (a == null) return false;
+    if (a instanceof Boolean) return (boolean) a;
+    return true;
+  }
+
+  public static boolean isEqual(Object a, Object b) {
+    if (a == null && b == null) return true;
+    if (a == null) return false;
+    return a.equals(b);
+  }
+
+  public static void validateDictKey(Token token, Object key) {
+    if (!(key instanceof TString) && !(key instanceof Integer) && !(key instanceof Double)) {
+      throw new RuntimeError(token, "Dictionary supports only string/integer/double keys.");
+    }
+  }
+
+  // the callee of a call, checked to take the given number of arguments
+  public static ICallable callable(Token paren, Object callee, int arguments) {
+    if (!(callee instanceof ICallable))
+      throw new RuntimeError(paren, "Can call only functions.");
+    if (callee instanceof TClass)
+      throw new RuntimeError(paren, "Can't instantiate without 'new'.");
+
+    ICallable function = (ICallable) callee;
+    checkArity(paren, function.arity(), arguments);
+    return function;
+  }
+
+  public static void checkArity(Token paren, int arity, int arguments) {
+    if (arguments != arity) {
+      throw new RuntimeError(paren, "Expected " +
+          arity + " arguments but got " +
+          arguments + ".");
+    }
+  }
+
+  private static void validateListKey(Token token, TList object, Object key) {
+    if (!(key instanceof Integer))
+      throw new RuntimeError(token, "Integer index expected.");
+    int var2 = (int) key, len = object.size();
+    if (var2 < 0 || var2 >= len)
+      throw new RuntimeError(token, "Index is out of range.");
+  }
+
+  private static double toDouble(Object o) {
+    if (o instanceof Integer) return ((Integer) o).doubleValue();
+    return (double) o;
+  }
+
+  private static boolean checkIntDoubles(Object left, Object right) {
+    return (left instanceof Double || left instanceof Integer) &&
+        (right instanceof Double || right instanceof Integer);
+  }
+
+  private static boolean checkInts(Object left, Object right) {
+    return left instanceof Integer && right instanceof Integer;
+  }
+
+  private static boolean isType(Object object) {
+    return object instanceof Type || object instanceof TClass;
+  }
+
+  private static boolean isInstance(Object left, Object right) {
+    if (!(right instanceof TClass)) return false;
+    if (!(left instanceof TInstance)) return false;
+
+    TClass type = (TClass) right;
+    TClass instanceType = ((TInstance) left).getClazz();
+
+    if (instanceType.equals(type)) return true;
+    while (instanceType.getSuperclass() != null) {
+      if (instanceType.getSuperclass().equals(type)) {
+        return true;
+      }
+
+      instanceType = instanceType.getSuperclass();
+    }
+
+    return false;
+  }
+}
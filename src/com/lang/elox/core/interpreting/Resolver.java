@@ -1,13 +1,15 @@
 package com.lang.elox.core.interpreting;
 
 import com.lang.elox.core.scanning.Token;
+import com.lang.elox.core.scanning.TokenType;
 import com.lang.elox.representation.interfaces.ExprVisitor;
 import com.lang.elox.representation.interfaces.StmtVisitor;
 import com.lang.elox.representation.parsetime.Expr;
 import com.lang.elox.representation.parsetime.Stmt;
 import com.lang.elox.utils.ErrorReporter;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
@@ -15,9 +17,16 @@ import java.util.Stack;
 public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
   private final Interpreter interpreter;
   private final ErrorReporter reporter;
-  private final Stack<Map<String, Boolean>> scopes = new Stack<>();
+  private final Stack<Map<String, Local>> scopes = new Stack<>();
   private FunctionType currentFunction = FunctionType.NONE;
   private ClassType currentClass = ClassType.NONE;
+  private int loopDepth = 0;
+  // try blocks of the current function enclosing the statement
+  private int tryDepth = 0;
+  // the function being resolved, the script itself at the top
+  private Closure closure = new Closure(null, 0);
+  // cells of the scope endScope last closed, null if none
+  private int[] boxedSlots;
 
   private enum FunctionType {
     NONE,
@@ -33,6 +42,71 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
     SUBCLASS
   }
 
+  private static final class Local {
+    final int slot;
+    boolean defined;
+    // the declared function or class is still being resolved, its value
+    // is set after the closures inside it are created
+    boolean initializing;
+    boolean captured;
+    boolean assigned;
+    // captured before the variable got its value
+    boolean early;
+    Stmt declaration;
+    final List<Expr> uses = new ArrayList<>();
+
+    Local(int slot) {
+      this.slot = slot;
+    }
+
+    // Closures copy what they capture. A variable that changes after it is
+    // captured is shared through a cell instead.
+    boolean boxed() {
+      return captured && (assigned || early);
+    }
+  }
+
+  // The variables a function captures from outside, in upvalue order
+  private static final class Closure {
+    final Closure enclosing;
+    // index of the function's own scope in scopes
+    final int base;
+    final List<Local> upvalues = new ArrayList<>();
+    final List<Integer> depths = new ArrayList<>();
+    final List<Integer> slots = new ArrayList<>();
+
+    Closure(Closure enclosing, int base) {
+      this.enclosing = enclosing;
+      this.base = base;
+    }
+
+    // the upvalue of the local declared in the given scope, added with the
+    // enclosing functions' upvalues it comes through if it's new
+    int upvalue(Local local, int scope) {
+      int index = upvalues.indexOf(local);
+      if (index != -1) return index;
+
+      if (scope >= enclosing.base) {
+        // the closure is created in the scope right outside the function
+        depths.add(base - 1 - scope);
+        slots.add(local.slot);
+      } else {
+        depths.add(-1);
+        slots.add(enclosing.upvalue(local, scope));
+      }
+      upvalues.add(local);
+      return upvalues.size() - 1;
+    }
+
+    int[] depths() {
+      return depths.isEmpty() ? null : depths.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    int[] slots() {
+      return slots.isEmpty() ? null : slots.stream().mapToInt(Integer::intValue).toArray();
+    }
+  }
+
   public Resolver(Interpreter interpreter, ErrorReporter reporter) {
     this.interpreter = interpreter;
     this.reporter = reporter;
@@ -51,60 +125,188 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
   }
 
   private void beginScope() {
-    scopes.push(new HashMap<>());
+    scopes.push(new LinkedHashMap<>());
+  }
+
+  // Returns the number of slots the scope's frame needs and leaves the
+  // slots to keep in cells in boxedSlots. Uses of those variables are
+  // marked as boxed.
+  private int endScope() {
+    Map<String, Local> scope = scopes.pop();
+    int count = 0;
+    for (Local local : scope.values()) {
+      if (local.boxed()) count++;
+    }
+
+    boxedSlots = count == 0 ? null : new int[count];
+    int i = 0;
+    for (Local local : scope.values()) {
+      if (!local.boxed()) continue;
+      boxedSlots[i++] = local.slot;
+      for (Expr use : local.uses) {
+        if (use instanceof Expr.Variable) ((Expr.Variable) use).boxed = true;
+        else ((Expr.Assign) use).boxed = true;
+      }
+      if (local.declaration instanceof Stmt.Var) ((Stmt.Var) local.declaration).boxed = true;
+      if (local.declaration instanceof Stmt.Function) ((Stmt.Function) local.declaration).boxed = true;
+      if (local.declaration instanceof Stmt.Class) ((Stmt.Class) local.declaration).boxed = true;
+    }
+    return scope.size();
   }
 
-  private void endScope() {
-    scopes.pop();
+  // returns the slot of the declared variable, or -1 for globals
+  private int declare(Token name) {
+    Local local = declare(name, null);
+    return local != null ? local.slot : -1;
   }
 
-  private void declare(Token name) {
-    if (scopes.isEmpty()) return;
-    Map<String, Boolean> scope = scopes.peek();
-    if (scope.containsKey(name.lexeme)) {
+  private Local declare(Token name, Stmt declaration) {
+    if (scopes.isEmpty()) return null;
+    Map<String, Local> scope = scopes.peek();
+    Local local = scope.get(name.lexeme);
+    if (local != null) {
       reporter.error(name, "Variable already declared in this scope.");
+      local.defined = false;
+      return local;
     }
-    scope.put(name.lexeme, false);
+    local = new Local(scope.size());
+    local.declaration = declaration;
+    scope.put(name.lexeme, local);
+    return local;
   }
 
   private void define(Token name) {
     if (scopes.isEmpty()) return;
-    scopes.peek().put(name.lexeme, true);
+    scopes.peek().get(name.lexeme).defined = true;
+  }
+
+  private void defineSynthetic(String name) {
+    Map<String, Local> scope = scopes.peek();
+    Local local = new Local(scope.size());
+    local.defined = true;
+    scope.put(name, local);
+  }
+
+  private Local findLocal(String name, int depth) {
+    return scopes.get(scopes.size() - depth - 1).get(name);
+  }
+
+  // the upvalue the current function reads the local depth scopes out
+  // through, -1 if the local belongs to the function itself
+  private int upvalue(Local local, int depth) {
+    int scope = scopes.size() - depth - 1;
+    if (scope >= closure.base) return -1;
+
+    local.captured = true;
+    if (!local.defined || local.initializing) local.early = true;
+    return closure.upvalue(local, scope);
   }
 
-  private void resolveLocal(Expr expr, Token name) {
+  // returns the number of scopes between the use and the declaration, or -1 for globals
+  private int resolveDepth(Token name) {
     for (int i = scopes.size() - 1; i >= 0; i--) {
       if (scopes.get(i).containsKey(name.lexeme)) {
-        interpreter.resolve(expr, scopes.size() - i - 1);
-        return;
+        return scopes.size() - i - 1;
       }
     }
+
+    return -1;
+  }
+
+  private static boolean declares(List<Stmt> statements) {
+    for (Stmt stmt : statements) {
+      if (stmt instanceof Stmt.Var || stmt instanceof Stmt.Function || stmt instanceof Stmt.Class) return true;
+    }
+    return false;
+  }
+
+  // Marks loops like 'for (var i = 0; i < n; i += 1)', whose condition
+  // compares the variable with a bound and whose increment adds a constant
+  // to it, so the interpreter can step an int counter directly.
+  private static void counter(Stmt.For stmt, Stmt.Var variable) {
+    // closures see the counter through its cell
+    if (variable.boxed) return;
+    int slot = variable.slot;
+    Stmt.While loop = stmt.loop;
+    if (!(loop.condition instanceof Expr.Binary) || !(loop.increment instanceof Expr.Assign)) return;
+
+    Expr.Binary condition = (Expr.Binary) loop.condition;
+    switch (condition.operator.type) {
+      case LESS: case LESS_EQUAL: case GREATER: case GREATER_EQUAL: break;
+      default: return;
+    }
+    if (!isLocal(condition.left, slot)) return;
+
+    Expr.Assign increment = (Expr.Assign) loop.increment;
+    if (increment.depth != 0 || increment.slot != slot || !(increment.value instanceof Expr.Binary)) return;
+    Expr.Binary value = (Expr.Binary) increment.value;
+    if (!isLocal(value.left, slot) || !(value.right instanceof Expr.Literal)) return;
+    Object step = ((Expr.Literal) value.right).value;
+    if (!(step instanceof Integer)) return;
+
+    if (value.operator.type == TokenType.PLUS) {
+      stmt.step = (int) step;
+    } else if (value.operator.type == TokenType.MINUS) {
+      stmt.step = -(int) step;
+    } else {
+      return;
+    }
+    stmt.counter = slot;
+  }
+
+  private static boolean isLocal(Expr expr, int slot) {
+    return expr instanceof Expr.Variable && ((Expr.Variable) expr).depth == 0 && ((Expr.Variable) expr).slot == slot;
   }
 
   private void resolveLambda(Expr.Lambda lambda, FunctionType type) {
     FunctionType enclosingLambda = currentFunction;
+    int enclosingLoopDepth = loopDepth;
+    int enclosingTryDepth = tryDepth;
     currentFunction = type;
+    loopDepth = 0;
+    tryDepth = 0;
+    closure = new Closure(closure, scopes.size());
     beginScope();
     for (Token param : lambda.params) {
       declare(param);
       define(param);
     }
     resolve(lambda.body);
-    endScope();
+    lambda.frameSize = endScope();
+    lambda.boxedSlots = boxedSlots;
+    // null for a lambda capturing nothing, which is then created only once
+    lambda.captureDepths = closure.depths();
+    lambda.captureSlots = closure.slots();
+    closure = closure.enclosing;
     currentFunction = enclosingLambda;
+    loopDepth = enclosingLoopDepth;
+    tryDepth = enclosingTryDepth;
   }
 
   private void resolveFunction(Stmt.Function function, FunctionType type) {
     FunctionType enclosingFunction = currentFunction;
+    int enclosingLoopDepth = loopDepth;
+    int enclosingTryDepth = tryDepth;
     currentFunction = type;
+    loopDepth = 0;
+    tryDepth = 0;
+    closure = new Closure(closure, scopes.size());
     beginScope();
     for (Token param : function.params) {
       declare(param);
       define(param);
     }
+    // methods get the receiver in the slot after their parameters
+    if (type == FunctionType.METHOD || type == FunctionType.INITIALIZER) defineSynthetic("this");
     resolve(function.body);
-    endScope();
+    function.frameSize = endScope();
+    function.boxedSlots = boxedSlots;
+    function.captureDepths = closure.depths();
+    function.captureSlots = closure.slots();
+    closure = closure.enclosing;
     currentFunction = enclosingFunction;
+    loopDepth = enclosingLoopDepth;
+    tryDepth = enclosingTryDepth;
   }
 
   @Override
@@ -114,20 +316,25 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
 
   @Override
   public Void visit(Stmt.Throw stmt) {
+    resolve(stmt.expr);
     return null;
   }
 
   @Override
   public Void visit(Stmt.Try stmt) {
     beginScope();
+    tryDepth++;
     resolve(stmt.tryStmt);
-    endScope();
+    tryDepth--;
+    stmt.tryFrameSize = endScope();
+    stmt.tryBoxedSlots = boxedSlots;
 
     beginScope();
     declare(stmt.parameter);
     define(stmt.parameter);
     resolve(stmt.catchStmt);
-    endScope();
+    stmt.catchFrameSize = endScope();
+    stmt.catchBoxedSlots = boxedSlots;
     return null;
   }
 
@@ -135,7 +342,9 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
   public Void visit(Stmt.Import stmt) {
     beginScope();
     resolve(stmt.statements);
+    stmt.locals = new ArrayList<>(scopes.peek().keySet());
     endScope();
+    stmt.boxedSlots = boxedSlots;
     return null;
   }
 
@@ -151,6 +360,7 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
   @Override
   public Void visit(Expr.IndexGet expr) {
     resolve(expr.object);
+    resolve(expr.index);
     return null;
   }
 
@@ -158,11 +368,13 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
   public Void visit(Expr.IndexSet expr) {
     resolve(expr.value);
     resolve(expr.object);
+    resolve(expr.index);
     return null;
   }
 
   @Override
   public Void visit(Expr.ListLiteral expr) {
+    expr.elements.forEach(this::resolve);
     return null;
   }
 
@@ -173,7 +385,16 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
     } else if (currentClass != ClassType.SUBCLASS) {
       reporter.error(expr.keyword, "Cannot use 'super' in a class with no superclass.");
     }
-    resolveLocal(expr, expr.keyword);
+    expr.depth = resolveDepth(expr.keyword);
+    // the method frame holding the receiver sits right inside the 'super' scope
+    if (expr.depth > 0) {
+      expr.upvalue = upvalue(findLocal("super", expr.depth), expr.depth);
+      Local receiver = findLocal("this", expr.depth - 1);
+      if (receiver != null) {
+        expr.slot = receiver.slot;
+        expr.receiverUpvalue = upvalue(receiver, expr.depth - 1);
+      }
+    }
     return null;
   }
 
@@ -183,7 +404,12 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
       reporter.error(expr.keyword, "Cannot use 'this' outside of class.");
       return null;
     }
-    resolveLocal(expr, expr.keyword);
+    expr.depth = resolveDepth(expr.keyword);
+    if (expr.depth != -1) {
+      Local local = findLocal("this", expr.depth);
+      expr.slot = local.slot;
+      expr.upvalue = upvalue(local, expr.depth);
+    }
     return null;
   }
 
@@ -200,12 +426,20 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
     return null;
   }
 
+  @Override
+  public Void visit(Expr.Invoke expr) {
+    resolve(expr.object);
+    expr.arguments.forEach(this::resolve);
+    return null;
+  }
+
   @Override
   public Void visit(Stmt.Class stmt) {
     ClassType enclosingClass = currentClass;
     currentClass = ClassType.CLASS;
 
-    declare(stmt.name);
+    Local local = declare(stmt.name, stmt);
+    if (local != null) stmt.slot = local.slot;
 
     if (stmt.superclass != null) {
       currentClass = ClassType.SUBCLASS;
@@ -213,15 +447,13 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
     }
 
     define(stmt.name);
+    if (local != null) local.initializing = true;
 
     if (stmt.superclass != null) {
       beginScope();
-      scopes.peek().put("super", true);
+      defineSynthetic("super");
     }
 
-    beginScope();
-    scopes.peek().put("this", true);
-
     for (Stmt.Function method : stmt.methods) {
       FunctionType declaration = FunctionType.METHOD;
       if (method.name.lexeme.equals("__init__"))
@@ -229,24 +461,31 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
       resolveFunction(method, declaration);
     }
 
-    endScope();
-
     if (stmt.superclass != null) endScope();
+    if (local != null) local.initializing = false;
     currentClass = enclosingClass;
     return null;
   }
 
   @Override
   public Void visit(Stmt.Block stmt) {
+    // a block declaring nothing gets no frame of its own
+    if (!declares(stmt.statements)) {
+      resolve(stmt.statements);
+      return null;
+    }
+
     beginScope();
     resolve(stmt.statements);
-    endScope();
+    stmt.frameSize = endScope();
+    stmt.boxedSlots = boxedSlots;
     return null;
   }
 
   @Override
   public Void visit(Stmt.Var stmt) {
-    declare(stmt.name);
+    Local local = declare(stmt.name, stmt);
+    if (local != null) stmt.slot = local.slot;
     if (stmt.initializer != null) {
       resolve(stmt.initializer);
     }
@@ -256,18 +495,36 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
 
   @Override
   public Void visit(Expr.Variable expr) {
-    if (!scopes.isEmpty() && scopes.peek().get(expr.name.lexeme) == Boolean.FALSE) {
-      reporter.error(expr.name, "Cannot refer to itself in initializer.");
+    if (!scopes.isEmpty()) {
+      Local local = scopes.peek().get(expr.name.lexeme);
+      if (local != null && !local.defined) {
+        reporter.error(expr.name, "Cannot refer to itself in initializer.");
+      }
     }
 
-    resolveLocal(expr, expr.name);
+    expr.depth = resolveDepth(expr.name);
+    if (expr.depth != -1) {
+      Local local = findLocal(expr.name.lexeme, expr.depth);
+      expr.slot = local.slot;
+      expr.upvalue = upvalue(local, expr.depth);
+      local.uses.add(expr);
+    }
+    expr.resolved = true;
     return null;
   }
 
   @Override
   public Void visit(Expr.Assign expr) {
     resolve(expr.value);
-    resolveLocal(expr, expr.name);
+    expr.depth = resolveDepth(expr.name);
+    if (expr.depth != -1) {
+      Local local = findLocal(expr.name.lexeme, expr.depth);
+      expr.slot = local.slot;
+      expr.upvalue = upvalue(local, expr.depth);
+      local.assigned = true;
+      local.uses.add(expr);
+    }
+    expr.resolved = true;
     return null;
   }
 
@@ -279,10 +536,15 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
 
   @Override
   public Void visit(Stmt.Function stmt) {
-    declare(stmt.name);
+    Local local = declare(stmt.name, stmt);
     define(stmt.name);
+    if (local != null) {
+      stmt.slot = local.slot;
+      local.initializing = true;
+    }
 
     resolveFunction(stmt, FunctionType.FUNCTION);
+    if (local != null) local.initializing = false;
     return null;
   }
 
@@ -308,6 +570,12 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
       if (currentFunction == FunctionType.INITIALIZER)
         reporter.error(stmt.keyword, "Cannot return a value from an initialzier.");
       resolve(stmt.value);
+      // a call made by the return itself can replace the function's frame,
+      // unless a try block still has to catch what it throws
+      if (tryDepth == 0) {
+        if (stmt.value instanceof Expr.Call) ((Expr.Call) stmt.value).tailCall = true;
+        if (stmt.value instanceof Expr.Invoke) ((Expr.Invoke) stmt.value).tailCall = true;
+      }
     }
     return null;
   }
@@ -315,7 +583,41 @@ public final class Resolver implements ExprVisitor<Void>, StmtVisitor<Void> {
   @Override
   public Void visit(Stmt.While stmt) {
     resolve(stmt.condition);
+    loopDepth++;
     resolve(stmt.body);
+    loopDepth--;
+    if (stmt.increment != null) resolve(stmt.increment);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.For stmt) {
+    if (!(stmt.initializer instanceof Stmt.Var)) {
+      if (stmt.initializer != null) resolve(stmt.initializer);
+      resolve(stmt.loop);
+      return null;
+    }
+
+    beginScope();
+    resolve(stmt.initializer);
+    resolve(stmt.loop);
+    stmt.frameSize = endScope();
+    stmt.boxedSlots = boxedSlots;
+    counter(stmt, (Stmt.Var) stmt.initializer);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Break stmt) {
+    if (loopDepth == 0)
+      reporter.error(stmt.keyword, "Cannot use 'break' outside of a loop.");
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Continue stmt) {
+    if (loopDepth == 0)
+      reporter.error(stmt.keyword, "Cannot use 'continue' outside of a loop.");
     return null;
   }
 
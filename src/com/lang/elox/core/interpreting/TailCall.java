@@ -0,0 +1,49 @@
+package com.lang.elox.core.interpreting;
+
+import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.representation.runtime.instances.TFunction;
+import com.lang.elox.representation.runtime.instances.TInstance;
+import com.lang.elox.representation.runtime.instances.TLambda;
+
+// Result of a 'return' whose value is a call of an Elox function. Instead of
+// calling it, the return hands the call to the function it leaves, which
+// makes it once its own frame is released. Chains of tail calls therefore
+// run in a loop and don't grow the Java stack.
+
+public final class TailCall {
+  private final ICallable function;
+  // replaces the bound receiver of a method, null for plain calls
+  private final TInstance receiver;
+  private final Object[] arguments;
+
+  TailCall(ICallable function, TInstance receiver, Object[] arguments) {
+    this.function = function;
+    this.receiver = receiver;
+    this.arguments = arguments;
+  }
+
+  // Elox functions are left for the trampoline, anything else is called now
+  public static Object of(Interpreter interpreter, ICallable function, Object[] arguments) {
+    if (function instanceof TFunction || function instanceof TLambda) return new TailCall(function, null, arguments);
+    return function.call(interpreter, arguments);
+  }
+
+  public static Object of(Interpreter interpreter, IMethod method, TInstance receiver, Object[] arguments) {
+    if (method instanceof TFunction) return new TailCall(method, receiver, arguments);
+    return method.invoke(interpreter, receiver, arguments);
+  }
+
+  // makes the calls left by result until one returns a value
+  public static Object complete(Interpreter interpreter, Object result) {
+    while (result instanceof TailCall) {
+      TailCall call = (TailCall) result;
+      if (call.function instanceof TFunction) {
+        result = ((TFunction) call.function).enter(interpreter, call.receiver, call.arguments);
+      } else {
+        result = ((TLambda) call.function).enter(interpreter, call.arguments);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,265 @@
+package com.lang.elox.core.interpreting;
+
+import com.lang.elox.representation.interfaces.ExprVisitor;
+import com.lang.elox.representation.interfaces.StmtVisitor;
+import com.lang.elox.representation.parsetime.Expr;
+import com.lang.elox.representation.parsetime.Stmt;
+import com.lang.elox.utils.ErrorReporter;
+
+import java.util.List;
+import java.util.Map;
+
+// Walks a resolved tree and reports every variable the resolver left
+// without a binding. Such a variable would be looked up as a global at
+// runtime even when it names a local. Enabled with --verify-resolution.
+
+public final class Verifier implements ExprVisitor<Void>, StmtVisitor<Void> {
+  private final ErrorReporter reporter;
+
+  public Verifier(ErrorReporter reporter) {
+    this.reporter = reporter;
+  }
+
+  public void verify(List<Stmt> statements) {
+    statements.forEach(this::verify);
+  }
+
+  private void verify(Stmt stmt) {
+    if (stmt != null) stmt.accept(this);
+  }
+
+  private void verify(Expr expr) {
+    if (expr != null) expr.accept(this);
+  }
+
+  private void verifyAll(List<Expr> expressions) {
+    expressions.forEach(this::verify);
+  }
+
+  // statements
+
+  @Override
+  public Void visit(Stmt.Expression stmt) {
+    verify(stmt.expression);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Var stmt) {
+    verify(stmt.initializer);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Block stmt) {
+    verify(stmt.statements);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.If stmt) {
+    verify(stmt.condition);
+    verify(stmt.thenBranch);
+    verify(stmt.elseBranch);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.While stmt) {
+    verify(stmt.condition);
+    verify(stmt.body);
+    verify(stmt.increment);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.For stmt) {
+    verify(stmt.initializer);
+    verify(stmt.loop);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Function stmt) {
+    verify(stmt.body);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Return stmt) {
+    verify(stmt.value);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Break stmt) {
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Continue stmt) {
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Class stmt) {
+    verify(stmt.superclass);
+    stmt.methods.forEach(this::verify);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Import stmt) {
+    verify(stmt.statements);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Try stmt) {
+    verify(stmt.tryStmt);
+    verify(stmt.catchStmt);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Throw stmt) {
+    verify(stmt.expr);
+    return null;
+  }
+
+  // expressions
+
+  @Override
+  public Void visit(Expr.Variable expr) {
+    if (!expr.resolved) reporter.error(expr.name, "Variable was not resolved.");
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Assign expr) {
+    if (!expr.resolved) reporter.error(expr.name, "Variable was not resolved.");
+    verify(expr.value);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Unary expr) {
+    verify(expr.right);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Binary expr) {
+    verify(expr.left);
+    verify(expr.right);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Grouping expr) {
+    verify(expr.expr);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Literal expr) {
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Logical expr) {
+    verify(expr.left);
+    verify(expr.right);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.StringLiteral expr) {
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Call expr) {
+    verify(expr.callee);
+    verifyAll(expr.arguments);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Invoke expr) {
+    verify(expr.object);
+    verifyAll(expr.arguments);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Instance expr) {
+    verify(expr.clazz);
+    verifyAll(expr.arguments);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Get expr) {
+    verify(expr.object);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Set expr) {
+    verify(expr.object);
+    verify(expr.value);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Super expr) {
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.This expr) {
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.ListLiteral expr) {
+    verifyAll(expr.elements);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.DictLiteral expr) {
+    for (Map.Entry<Expr, Expr> entry : expr.map.entrySet()) {
+      verify(entry.getKey());
+      verify(entry.getValue());
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.IndexSet expr) {
+    verify(expr.object);
+    verify(expr.index);
+    verify(expr.value);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.IndexGet expr) {
+    verify(expr.object);
+    verify(expr.index);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Lambda expr) {
+    verify(expr.body);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.TypeLiteral expr) {
+    return null;
+  }
+}
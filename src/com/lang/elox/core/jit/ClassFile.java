@@ -0,0 +1,299 @@
+package com.lang.elox.core.jit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal class file writer, just enough for the code Jit generates. Classes
+// are written as version 49 so the verifier infers types itself and no
+// StackMapTable has to be computed.
+
+final class ClassFile {
+  private static final int VERSION = 49;
+
+  static final int ACONST_NULL = 0x01;
+  static final int ICONST_0 = 0x03;
+  static final int BIPUSH = 0x10;
+  static final int SIPUSH = 0x11;
+  static final int LDC_W = 0x13;
+  static final int ALOAD = 0x19;
+  static final int AALOAD = 0x32;
+  static final int ASTORE = 0x3a;
+  static final int AASTORE = 0x53;
+  static final int POP = 0x57;
+  static final int DUP = 0x59;
+  static final int DUP2 = 0x5c;
+  static final int IFEQ = 0x99;
+  static final int IFNE = 0x9a;
+  static final int GOTO = 0xa7;
+  static final int ARETURN = 0xb0;
+  static final int RETURN = 0xb1;
+  static final int GETSTATIC = 0xb2;
+  static final int GETFIELD = 0xb4;
+  static final int INVOKEVIRTUAL = 0xb6;
+  static final int INVOKESPECIAL = 0xb7;
+  static final int INVOKESTATIC = 0xb8;
+  static final int NEW = 0xbb;
+  static final int ANEWARRAY = 0xbd;
+  static final int ATHROW = 0xbf;
+  static final int CHECKCAST = 0xc0;
+
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SUPER = 0x0020;
+
+  private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+  private final DataOutputStream pool = new DataOutputStream(poolBytes);
+  private final Map<String, Integer> entries = new HashMap<>();
+  private int poolCount = 1;
+
+  private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+  private final DataOutputStream methods = new DataOutputStream(methodBytes);
+  private int methodCount = 0;
+
+  // constant pool
+
+  int utf8(String value) {
+    Integer index = entries.get("U" + value);
+    if (index != null) return index;
+    try {
+      pool.writeByte(1);
+      pool.writeUTF(value);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return register("U" + value, 1);
+  }
+
+  int classRef(String internalName) {
+    return entry("C" + internalName, 7, utf8(internalName));
+  }
+
+  int fieldRef(String owner, String name, String descriptor) {
+    return entry("F" + owner + "." + name + descriptor, 9, classRef(owner), nameAndType(name, descriptor));
+  }
+
+  int methodRef(String owner, String name, String descriptor) {
+    return entry("M" + owner + "." + name + descriptor, 10, classRef(owner), nameAndType(name, descriptor));
+  }
+
+  private int nameAndType(String name, String descriptor) {
+    return entry("N" + name + descriptor, 12, utf8(name), utf8(descriptor));
+  }
+
+  private int entry(String key, int tag, int... operands) {
+    Integer index = entries.get(key);
+    if (index != null) return index;
+    try {
+      pool.writeByte(tag);
+      for (int operand : operands) pool.writeShort(operand);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return register(key, 1);
+  }
+
+  private int register(String key, int size) {
+    int index = poolCount;
+    poolCount += size;
+    if (poolCount > 0xffff) throw new IllegalStateException("Constant pool overflow.");
+    entries.put(key, index);
+    return index;
+  }
+
+  // methods
+
+  void method(int access, String name, String descriptor, Code code) {
+    try {
+      methods.writeShort(access);
+      methods.writeShort(utf8(name));
+      methods.writeShort(utf8(descriptor));
+      methods.writeShort(1);
+
+      methods.writeShort(utf8("Code"));
+      methods.writeInt(12 + code.length + 8 * code.handlers.size());
+      methods.writeShort(code.maxDepth);
+      methods.writeShort(code.maxLocals);
+      methods.writeInt(code.length);
+      methods.write(code.bytes, 0, code.length);
+      methods.writeShort(code.handlers.size());
+      for (int[] handler : code.handlers) {
+        methods.writeShort(code.labels[handler[0]]);
+        methods.writeShort(code.labels[handler[1]]);
+        methods.writeShort(code.labels[handler[2]]);
+        methods.writeShort(handler[3]);
+      }
+      methods.writeShort(0);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    methodCount++;
+  }
+
+  byte[] toByteArray(String name, String superName) {
+    int thisClass = classRef(name);
+    int superClass = classRef(superName);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(0xcafebabe);
+      out.writeShort(0);
+      out.writeShort(VERSION);
+      out.writeShort(poolCount);
+      poolBytes.writeTo(out);
+      out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0);
+      out.writeShort(0);
+      out.writeShort(methodCount);
+      methodBytes.writeTo(out);
+      out.writeShort(0);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  // Bytecode of a single method. The operand stack depth is tracked as
+  // instructions are added, callers pass the stack effect of each one.
+  static final class Code {
+    private byte[] bytes = new byte[256];
+    private int length = 0;
+    private int depth = 0;
+    private int maxDepth = 0;
+    private int maxLocals = 0;
+
+    private int[] labels = new int[16];
+    private int labelCount = 0;
+    private final List<int[]> jumps = new ArrayList<>();
+    private final List<int[]> handlers = new ArrayList<>();
+
+    int length() {
+      return length;
+    }
+
+    void locals(int count) {
+      if (count > maxLocals) maxLocals = count;
+    }
+
+    void op(int opcode, int stackEffect) {
+      write(opcode);
+      adjust(stackEffect);
+    }
+
+    void op1(int opcode, int operand, int stackEffect) {
+      op(opcode, stackEffect);
+      write(operand);
+    }
+
+    void op2(int opcode, int operand, int stackEffect) {
+      op(opcode, stackEffect);
+      write(operand >> 8);
+      write(operand);
+    }
+
+    void pushInt(int value) {
+      if (value >= -1 && value <= 5) {
+        op(ICONST_0 + value, 1);
+      } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+        op1(BIPUSH, value, 1);
+      } else {
+        op2(SIPUSH, value, 1);
+      }
+    }
+
+    void load(int local) {
+      locals(local + 1);
+      op1(ALOAD, local, 1);
+    }
+
+    void store(int local) {
+      locals(local + 1);
+      op1(ASTORE, local, -1);
+    }
+
+    void invoke(int opcode, int methodRef, String descriptor) {
+      int effect = -argumentSlots(descriptor);
+      if (opcode != INVOKESTATIC) effect--;
+      if (!descriptor.endsWith(")V")) effect++;
+      op2(opcode, methodRef, effect);
+    }
+
+    // labels
+
+    int newLabel() {
+      if (labelCount == labels.length) labels = Arrays.copyOf(labels, labelCount * 2);
+      labels[labelCount] = -1;
+      return labelCount++;
+    }
+
+    void mark(int label) {
+      labels[label] = length;
+    }
+
+    void jump(int opcode, int label) {
+      op(opcode, opcode == GOTO ? 0 : -1);
+      jumps.add(new int[] { length - 1, length, label });
+      write(0);
+      write(0);
+    }
+
+    void handler(int start, int end, int target, int catchType) {
+      handlers.add(new int[] { start, end, target, catchType });
+    }
+
+    // code after an unconditional jump, return or throw starts with the
+    // depth of whatever branches to it
+    void setDepth(int depth) {
+      this.depth = depth;
+      if (depth > maxDepth) maxDepth = depth;
+    }
+
+    void finish() {
+      if (length > Short.MAX_VALUE) throw new IllegalStateException("Method too large.");
+      for (int[] jump : jumps) {
+        int offset = labels[jump[2]] - jump[0];
+        bytes[jump[1]] = (byte) (offset >> 8);
+        bytes[jump[1] + 1] = (byte) offset;
+      }
+    }
+
+    private void adjust(int stackEffect) {
+      depth += stackEffect;
+      if (depth > maxDepth) maxDepth = depth;
+    }
+
+    private void write(int b) {
+      if (length == bytes.length) bytes = Arrays.copyOf(bytes, length * 2);
+      bytes[length++] = (byte) b;
+    }
+
+    private static int argumentSlots(String descriptor) {
+      int slots = 0;
+      int i = 1;
+      while (descriptor.charAt(i) != ')') {
+        char c = descriptor.charAt(i);
+        if (c == 'L') {
+          i = descriptor.indexOf(';', i) + 1;
+          slots++;
+        } else if (c == '[') {
+          while (descriptor.charAt(i) == '[') i++;
+          if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+          i++;
+          slots++;
+        } else {
+          slots += c == 'J' || c == 'D' ? 2 : 1;
+          i++;
+        }
+      }
+      return slots;
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package com.lang.elox.core.jit;
+
+import com.lang.elox.core.Environment;
+
+// Base class of the classes generated by Jit. A subclass runs one function
+// body or loop in the given frame and returns the value of an executed
+// return. A loop that finishes normally returns Completion.NORMAL.
+
+public abstract class CompiledCode {
+  protected final Object[] constants;
+
+  protected CompiledCode(Object[] constants) {
+    this.constants = constants;
+  }
+
+  public abstract Object execute(Environment environment);
+}
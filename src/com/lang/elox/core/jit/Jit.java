@@ -0,0 +1,86 @@
+package com.lang.elox.core.jit;
+
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.representation.parsetime.Expr;
+import com.lang.elox.representation.parsetime.Stmt;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Tiered execution for the tree-walking interpreter. Function bodies count
+// their calls and while loops their back edges; once a counter reaches its
+// threshold the body is compiled to a JVM class, defined as a hidden class
+// in this package so HotSpot can compile the script code like any other
+// Java method. A loop is promoted while it runs: its state lives in the
+// Environment, so the compiled loop simply continues from the next
+// condition check.
+
+public final class Jit {
+  public static final int DEFAULT_CALL_THRESHOLD = 1000;
+  public static final int DEFAULT_LOOP_THRESHOLD = 10000;
+
+  private final Interpreter interpreter;
+  private final int callThreshold;
+  private final int loopThreshold;
+  private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+  private final List<String> promotions = new ArrayList<>();
+
+  public Jit(Interpreter interpreter, int callThreshold, int loopThreshold) {
+    this.interpreter = interpreter;
+    this.callThreshold = callThreshold;
+    this.loopThreshold = loopThreshold;
+  }
+
+  public CompiledCode onCall(Stmt.Function declaration) {
+    if (declaration.compiled == null && ++declaration.invocations == callThreshold) {
+      declaration.compiled = compile(declaration.body, false,
+          "function '" + declaration.name.lexeme + "'", declaration.name, callThreshold + " calls");
+    }
+    return declaration.compiled;
+  }
+
+  public CompiledCode onCall(Expr.Lambda declaration) {
+    if (declaration.compiled == null && ++declaration.invocations == callThreshold) {
+      declaration.compiled = compile(declaration.body, false,
+          "lambda", declaration.name, callThreshold + " calls");
+    }
+    return declaration.compiled;
+  }
+
+  public CompiledCode onBackEdge(Stmt.While loop) {
+    if (loop.compiled == null && ++loop.backEdges == loopThreshold) {
+      loop.compiled = compile(Collections.singletonList(loop), true,
+          "loop", loop.keyword, loopThreshold + " iterations");
+    }
+    return loop.compiled;
+  }
+
+  public void report(PrintStream out) {
+    out.println("Tier stats: " + promotions.size() + " promotion(s).");
+    for (String promotion : promotions) {
+      out.println("  " + promotion);
+    }
+  }
+
+  private CompiledCode compile(List<Stmt> body, boolean loop, String what, Token token, String after) {
+    String site = what + " at line " + token.line;
+    JitCompiler compiler = new JitCompiler(interpreter);
+    try {
+      byte[] bytes = compiler.compile("com/lang/elox/core/jit/Compiled", body, loop);
+      Class<?> clazz = lookup.defineHiddenClass(bytes, true).lookupClass();
+      CompiledCode code = (CompiledCode) clazz.getConstructor(Object[].class).newInstance((Object) compiler.constants());
+      promotions.add(site + " compiled after " + after + ".");
+      return code;
+    } catch (JitCompiler.Unsupported e) {
+      promotions.add(site + " stays interpreted: unsupported " + e.getMessage() + ".");
+    } catch (ReflectiveOperationException | LinkageError | IllegalStateException e) {
+      promotions.add(site + " stays interpreted: " + e + ".");
+    }
+
+    return null;
+  }
+}
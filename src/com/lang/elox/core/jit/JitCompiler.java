@@ -0,0 +1,661 @@
+package com.lang.elox.core.jit;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.InlineCache;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.scanning.TokenType;
+import com.lang.elox.representation.interfaces.ExprVisitor;
+import com.lang.elox.representation.interfaces.StmtVisitor;
+import com.lang.elox.representation.parsetime.Expr;
+import com.lang.elox.representation.parsetime.Stmt;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.lang.elox.core.jit.ClassFile.*;
+
+// Translates one resolved function body into the class file of a
+// CompiledCode subclass. Frames stay Environment objects so closures created
+// by the interpreter and by compiled code share the same cells. Anything
+// the translation does not cover makes it throw Unsupported, and the
+// function keeps running in the interpreter.
+
+final class JitCompiler implements ExprVisitor<Void>, StmtVisitor<Void> {
+  static final class Unsupported extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    Unsupported(String construct) {
+      super(construct, null, false, false);
+    }
+  }
+
+  private static final String BASE = "com/lang/elox/core/jit/CompiledCode";
+  private static final String RUNTIME = "com/lang/elox/core/jit/JitRuntime";
+  private static final String OPERATIONS = "com/lang/elox/core/interpreting/Operations";
+  private static final String ENVIRONMENT = "com/lang/elox/core/Environment";
+  private static final String PROPERTY_CACHE = "com/lang/elox/core/interpreting/InlineCache$Property";
+
+  private static final String OBJECT = "Ljava/lang/Object;";
+  private static final String ENV = "L" + ENVIRONMENT + ";";
+  private static final String TOKEN = "Lcom/lang/elox/core/scanning/Token;";
+  private static final String MAP = "Ljava/util/Map;";
+
+  // locals of the generated execute method
+  private static final int THIS = 0;
+  private static final int FRAME = 1;
+  private static final int CONSTANTS = 2;
+
+  private final Interpreter interpreter;
+  private final Environment globals;
+  private final ClassFile file = new ClassFile();
+  private final ClassFile.Code code = new ClassFile.Code();
+
+  private final List<Object> constants = new ArrayList<>();
+  private final Map<Object, Integer> indexes = new IdentityHashMap<>();
+
+  // locals holding the frame of each enclosing block, innermost last
+  private final List<Integer> scopes = new ArrayList<>();
+  // break and continue labels of the enclosing loops, innermost last
+  private final List<int[]> loops = new ArrayList<>();
+  private int nextLocal = CONSTANTS + 1;
+
+  JitCompiler(Interpreter interpreter) {
+    this.interpreter = interpreter;
+    this.globals = interpreter.getGlobals();
+  }
+
+  byte[] compile(String className, List<Stmt> body, boolean loop) {
+    ClassFile.Code constructor = new ClassFile.Code();
+    constructor.load(THIS);
+    constructor.load(1);
+    constructor.invoke(INVOKESPECIAL, file.methodRef(BASE, "<init>", "([Ljava/lang/Object;)V"), "([Ljava/lang/Object;)V");
+    constructor.op(RETURN, 0);
+    constructor.finish();
+    file.method(ACC_PUBLIC, "<init>", "([Ljava/lang/Object;)V", constructor);
+
+    code.load(THIS);
+    code.op2(GETFIELD, file.fieldRef(BASE, "constants", "[Ljava/lang/Object;"), 0);
+    code.store(CONSTANTS);
+    scopes.add(FRAME);
+    body.forEach(this::compile);
+    if (loop) {
+      code.op2(GETSTATIC, file.fieldRef("com/lang/elox/core/interpreting/Completion", "NORMAL", OBJECT), 1);
+    } else {
+      code.op(ACONST_NULL, 1);
+    }
+    code.op(ARETURN, -1);
+    code.finish();
+    file.method(ACC_PUBLIC, "execute", "(" + ENV + ")" + OBJECT, code);
+
+    return file.toByteArray(className, BASE);
+  }
+
+  Object[] constants() {
+    return constants.toArray();
+  }
+
+  private void compile(Stmt stmt) {
+    stmt.accept(this);
+  }
+
+  private void compile(Expr expr) {
+    expr.accept(this);
+  }
+
+  // helpers
+
+  private void constant(Object value, String internalName) {
+    Integer index = indexes.get(value);
+    if (index == null) {
+      index = constants.size();
+      if (index > Short.MAX_VALUE) throw new Unsupported("constant pool size");
+      constants.add(value);
+      indexes.put(value, index);
+    }
+
+    code.load(CONSTANTS);
+    code.pushInt(index);
+    code.op(AALOAD, -1);
+    if (internalName != null) code.op2(CHECKCAST, file.classRef(internalName), 0);
+  }
+
+  private void token(Object token) {
+    constant(token, "com/lang/elox/core/scanning/Token");
+  }
+
+  private void call(String owner, String name, String descriptor) {
+    code.invoke(INVOKESTATIC, file.methodRef(owner, name, descriptor), descriptor);
+  }
+
+  private void callVirtual(String owner, String name, String descriptor) {
+    code.invoke(INVOKEVIRTUAL, file.methodRef(owner, name, descriptor), descriptor);
+  }
+
+  private void currentFrame() {
+    code.load(scopes.get(scopes.size() - 1));
+  }
+
+  // pushes the frame to start a lookup from and the distance that is left
+  private void frameAt(int depth) {
+    int top = scopes.size() - 1;
+    if (depth <= top) {
+      code.load(scopes.get(top - depth));
+      code.pushInt(0);
+    } else {
+      code.load(scopes.get(0));
+      code.pushInt(depth - top);
+    }
+  }
+
+  private void newFrame(int size) {
+    code.op2(NEW, file.classRef(ENVIRONMENT), 1);
+    code.op(DUP, 1);
+    currentFrame();
+    code.pushInt(size);
+    code.invoke(INVOKESPECIAL, file.methodRef(ENVIRONMENT, "<init>", "(" + ENV + "I)V"), "(" + ENV + "I)V");
+  }
+
+  private void defineLocal(int slot, boolean boxed) {
+    if (slot == -1) throw new Unsupported("global declaration");
+    callVirtual(ENVIRONMENT, boxed ? "defineBoxed" : "define", "(I" + OBJECT + ")V");
+  }
+
+  private void box(int local, int[] boxedSlots) {
+    if (boxedSlots == null) return;
+    code.load(local);
+    constant(boxedSlots, "[I");
+    callVirtual(ENVIRONMENT, "box", "([I)V");
+  }
+
+  private void block(List<Stmt> statements, int local) {
+    int saved = nextLocal;
+    scopes.add(local);
+    statements.forEach(this::compile);
+    scopes.remove(scopes.size() - 1);
+    nextLocal = saved;
+  }
+
+  private void array(List<Expr> elements) {
+    code.pushInt(elements.size());
+    code.op2(ANEWARRAY, file.classRef("java/lang/Object"), 0);
+    for (int i = 0; i < elements.size(); i++) {
+      code.op(DUP, 1);
+      code.pushInt(i);
+      compile(elements.get(i));
+      code.op(AASTORE, -3);
+    }
+  }
+
+  private void truthy(Expr condition) {
+    compile(condition);
+    call(OPERATIONS, "isTruthy", "(" + OBJECT + ")Z");
+  }
+
+  // statements
+
+  @Override
+  public Void visit(Stmt.Expression stmt) {
+    compile(stmt.expression);
+    code.op(POP, -1);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Var stmt) {
+    currentFrame();
+    code.pushInt(stmt.slot);
+    if (stmt.initializer != null) {
+      compile(stmt.initializer);
+    } else {
+      code.op(ACONST_NULL, 1);
+    }
+    defineLocal(stmt.slot, stmt.boxed);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Block stmt) {
+    if (stmt.frameSize == 0) {
+      stmt.statements.forEach(this::compile);
+      return null;
+    }
+
+    int local = nextLocal++;
+    newFrame(stmt.frameSize);
+    code.store(local);
+    box(local, stmt.boxedSlots);
+    block(stmt.statements, local);
+    nextLocal = local;
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.For stmt) {
+    List<Stmt> statements = new ArrayList<>();
+    if (stmt.initializer != null) statements.add(stmt.initializer);
+    statements.add(stmt.loop);
+    if (stmt.frameSize == 0) {
+      statements.forEach(this::compile);
+      return null;
+    }
+
+    int local = nextLocal++;
+    newFrame(stmt.frameSize);
+    code.store(local);
+    box(local, stmt.boxedSlots);
+    block(statements, local);
+    nextLocal = local;
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.If stmt) {
+    int elseLabel = code.newLabel();
+    int end = code.newLabel();
+
+    truthy(stmt.condition);
+    code.jump(IFEQ, elseLabel);
+    compile(stmt.thenBranch);
+    code.jump(GOTO, end);
+    code.mark(elseLabel);
+    if (stmt.elseBranch != null) compile(stmt.elseBranch);
+    code.mark(end);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.While stmt) {
+    int start = code.newLabel();
+    int next = code.newLabel();
+    int end = code.newLabel();
+
+    code.mark(start);
+    truthy(stmt.condition);
+    code.jump(IFEQ, end);
+    loops.add(new int[] { end, next });
+    compile(stmt.body);
+    loops.remove(loops.size() - 1);
+    code.mark(next);
+    if (stmt.increment != null) {
+      compile(stmt.increment);
+      code.op(POP, -1);
+    }
+    code.jump(GOTO, start);
+    code.mark(end);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Break stmt) {
+    code.jump(GOTO, loops.get(loops.size() - 1)[0]);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Continue stmt) {
+    code.jump(GOTO, loops.get(loops.size() - 1)[1]);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Function stmt) {
+    currentFrame();
+    code.pushInt(stmt.slot);
+    constant(stmt, "com/lang/elox/representation/parsetime/Stmt$Function");
+    currentFrame();
+    call(RUNTIME, "function", "(Lcom/lang/elox/representation/parsetime/Stmt$Function;" + ENV + ")" + OBJECT);
+    defineLocal(stmt.slot, stmt.boxed);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Return stmt) {
+    if (stmt.value != null) {
+      compile(stmt.value);
+    } else {
+      code.op(ACONST_NULL, 1);
+    }
+    code.op(ARETURN, -1);
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Class stmt) {
+    throw new Unsupported("class declaration");
+  }
+
+  @Override
+  public Void visit(Stmt.Import stmt) {
+    throw new Unsupported("import");
+  }
+
+  @Override
+  public Void visit(Stmt.Try stmt) {
+    int start = code.newLabel();
+    int end = code.newLabel();
+    int handler = code.newLabel();
+    int after = code.newLabel();
+
+    int local = nextLocal++;
+    newFrame(stmt.tryFrameSize);
+    code.store(local);
+    box(local, stmt.tryBoxedSlots);
+    code.mark(start);
+    block(stmt.tryStmt, local);
+    code.mark(end);
+    code.jump(GOTO, after);
+
+    code.mark(handler);
+    code.setDepth(1);
+    call(RUNTIME, "caught", "(Ljava/lang/RuntimeException;)" + OBJECT);
+    int value = nextLocal++;
+    code.store(value);
+    newFrame(stmt.catchFrameSize);
+    code.store(local);
+    code.load(local);
+    code.pushInt(0);
+    code.load(value);
+    callVirtual(ENVIRONMENT, "define", "(I" + OBJECT + ")V");
+    box(local, stmt.catchBoxedSlots);
+    block(stmt.catchStmt, local);
+    nextLocal = local;
+    code.mark(after);
+
+    code.handler(start, end, handler, file.classRef("java/lang/RuntimeException"));
+    return null;
+  }
+
+  @Override
+  public Void visit(Stmt.Throw stmt) {
+    compile(stmt.expr);
+    token(stmt.token);
+    call(RUNTIME, "raise", "(" + OBJECT + TOKEN + ")Ljava/lang/RuntimeException;");
+    code.op(ATHROW, -1);
+    return null;
+  }
+
+  // expressions
+
+  @Override
+  public Void visit(Expr.Literal expr) {
+    if (expr.value == null) {
+      code.op(ACONST_NULL, 1);
+    } else {
+      constant(expr.value, null);
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.StringLiteral expr) {
+    constant(expr.constant, null);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.TypeLiteral expr) {
+    token(expr.name);
+    call(OPERATIONS, "typeLiteral", "(" + TOKEN + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Grouping expr) {
+    compile(expr.expr);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Variable expr) {
+    if (expr.upvalue != -1) {
+      currentFrame();
+      code.pushInt(expr.upvalue);
+      callVirtual(ENVIRONMENT, expr.boxed ? "getBoxedUpvalue" : "getUpvalue", "(I)" + OBJECT);
+    } else if (expr.depth != -1) {
+      frameAt(expr.depth);
+      code.pushInt(expr.slot);
+      callVirtual(ENVIRONMENT, expr.boxed ? "getBoxedAt" : "getAt", "(II)" + OBJECT);
+    } else {
+      constant(globals, ENVIRONMENT);
+      constant(globals.cell(expr.name.lexeme), ENVIRONMENT + "$Cell");
+      token(expr.name);
+      call(RUNTIME, "getGlobal", "(" + ENV + "L" + ENVIRONMENT + "$Cell;" + TOKEN + ")" + OBJECT);
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Assign expr) {
+    if (expr.upvalue != -1) {
+      currentFrame();
+      code.pushInt(expr.upvalue);
+      compile(expr.value);
+      call(RUNTIME, "setUpvalue", "(" + ENV + "I" + OBJECT + ")" + OBJECT);
+    } else if (expr.depth != -1) {
+      frameAt(expr.depth);
+      code.pushInt(expr.slot);
+      compile(expr.value);
+      call(RUNTIME, expr.boxed ? "setBoxedLocal" : "setLocal", "(" + ENV + "II" + OBJECT + ")" + OBJECT);
+    } else {
+      constant(globals, ENVIRONMENT);
+      constant(globals.cell(expr.name.lexeme), ENVIRONMENT + "$Cell");
+      token(expr.name);
+      compile(expr.value);
+      call(RUNTIME, "setGlobal", "(" + ENV + "L" + ENVIRONMENT + "$Cell;" + TOKEN + OBJECT + ")" + OBJECT);
+    }
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.This expr) {
+    if (expr.upvalue != -1) {
+      currentFrame();
+      code.pushInt(expr.upvalue);
+      callVirtual(ENVIRONMENT, "getUpvalue", "(I)" + OBJECT);
+      return null;
+    }
+    frameAt(expr.depth);
+    code.pushInt(expr.slot);
+    callVirtual(ENVIRONMENT, "getAt", "(II)" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Super expr) {
+    currentFrame();
+    constant(expr, "com/lang/elox/representation/parsetime/Expr$Super");
+    call(RUNTIME, "superMethod", "(" + ENV + "Lcom/lang/elox/representation/parsetime/Expr$Super;)" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Binary expr) {
+    switch (expr.operator.type) {
+      case EQUAL_EQUAL:
+        compile(expr.left);
+        compile(expr.right);
+        call(RUNTIME, "equal", "(" + OBJECT + OBJECT + ")" + OBJECT);
+        return null;
+      case NOT_EQUAL:
+        compile(expr.left);
+        compile(expr.right);
+        call(RUNTIME, "notEqual", "(" + OBJECT + OBJECT + ")" + OBJECT);
+        return null;
+    }
+
+    String operation;
+    switch (expr.operator.type) {
+      case BIT_OR: operation = "bitOr"; break;
+      case BIT_XOR: operation = "bitXor"; break;
+      case BIT_LEFT: operation = "shiftLeft"; break;
+      case BIT_RIGHT: operation = "shiftRight"; break;
+      case BIT_AND: operation = "bitAnd"; break;
+      case IS: operation = "is"; break;
+      case GREATER: operation = "greater"; break;
+      case GREATER_EQUAL: operation = "greaterEqual"; break;
+      case LESS: operation = "less"; break;
+      case LESS_EQUAL: operation = "lessEqual"; break;
+      case PLUS: operation = "add"; break;
+      case MINUS: operation = "subtract"; break;
+      case STAR: operation = "multiply"; break;
+      case SLASH: operation = "divide"; break;
+      case REMAINDER: operation = "remainder"; break;
+      default:
+        throw new Unsupported("operator " + expr.operator.lexeme);
+    }
+
+    token(expr.operator);
+    compile(expr.left);
+    compile(expr.right);
+    call(OPERATIONS, operation, "(" + TOKEN + OBJECT + OBJECT + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Unary expr) {
+    switch (expr.operator.type) {
+      case NOT:
+        compile(expr.right);
+        call(RUNTIME, "not", "(" + OBJECT + ")" + OBJECT);
+        return null;
+      case MINUS:
+        token(expr.operator);
+        compile(expr.right);
+        call(OPERATIONS, "negate", "(" + TOKEN + OBJECT + ")" + OBJECT);
+        return null;
+      case BIT_COMPL:
+        token(expr.operator);
+        compile(expr.right);
+        call(OPERATIONS, "complement", "(" + TOKEN + OBJECT + ")" + OBJECT);
+        return null;
+    }
+
+    throw new Unsupported("operator " + expr.operator.lexeme);
+  }
+
+  @Override
+  public Void visit(Expr.Logical expr) {
+    int end = code.newLabel();
+    compile(expr.left);
+    // the left operand is the result when it decides it
+    code.op(DUP, 1);
+    call(OPERATIONS, "isTruthy", "(" + OBJECT + ")Z");
+    code.jump(expr.operator.type == TokenType.OR ? IFNE : IFEQ, end);
+    code.op(POP, -1);
+    compile(expr.right);
+    code.mark(end);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Call expr) {
+    constant(interpreter, "com/lang/elox/core/interpreting/Interpreter");
+    compile(expr.callee);
+    array(expr.arguments);
+    token(expr.paren);
+    call(RUNTIME, expr.tailCall ? "tailCall" : "call",
+        "(Lcom/lang/elox/core/interpreting/Interpreter;" + OBJECT + "[" + OBJECT + TOKEN + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Invoke expr) {
+    if (expr.cache == null) expr.cache = new InlineCache.Property(expr.name);
+    compile(expr.object);
+    code.op(DUP, 1);
+    constant(expr.cache, PROPERTY_CACHE);
+    call(RUNTIME, "method", "(" + OBJECT + "L" + PROPERTY_CACHE + ";)" + OBJECT);
+    // object, method, callee
+    code.op(DUP2, 2);
+    constant(expr.cache, PROPERTY_CACHE);
+    call(RUNTIME, "callee", "(" + OBJECT + OBJECT + "L" + PROPERTY_CACHE + ";)" + OBJECT);
+    constant(interpreter, "com/lang/elox/core/interpreting/Interpreter");
+    array(expr.arguments);
+    token(expr.paren);
+    token(expr.name);
+    code.pushInt(expr.tailCall ? 1 : 0);
+    call(RUNTIME, "invoke", "(" + OBJECT + OBJECT + OBJECT
+        + "Lcom/lang/elox/core/interpreting/Interpreter;[" + OBJECT + TOKEN + TOKEN + "Z)" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Instance expr) {
+    constant(interpreter, "com/lang/elox/core/interpreting/Interpreter");
+    compile(expr.clazz);
+    array(expr.arguments);
+    token(expr.paren);
+    call(RUNTIME, "construct", "(Lcom/lang/elox/core/interpreting/Interpreter;" + OBJECT + "[" + OBJECT + TOKEN + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Lambda expr) {
+    constant(expr, "com/lang/elox/representation/parsetime/Expr$Lambda");
+    currentFrame();
+    call(RUNTIME, "lambda", "(Lcom/lang/elox/representation/parsetime/Expr$Lambda;" + ENV + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Get expr) {
+    // shares the site's cache with the interpreter
+    if (expr.cache == null) expr.cache = new InlineCache.Property(expr.name);
+    constant(expr.cache, PROPERTY_CACHE);
+    compile(expr.object);
+    callVirtual(PROPERTY_CACHE, "get", "(" + OBJECT + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.Set expr) {
+    compile(expr.object);
+    token(expr.name);
+    call(RUNTIME, "checkInstance", "(" + OBJECT + TOKEN + ")" + OBJECT);
+    compile(expr.value);
+    token(expr.name);
+    call(RUNTIME, "setProperty", "(" + OBJECT + OBJECT + TOKEN + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.ListLiteral expr) {
+    array(expr.elements);
+    call(RUNTIME, "list", "([" + OBJECT + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.DictLiteral expr) {
+    call(RUNTIME, "dict", "()" + MAP);
+    for (Map.Entry<Expr, Expr> entry : expr.map.entrySet()) {
+      compile(entry.getKey());
+      compile(entry.getValue());
+      token(expr.paren);
+      call(RUNTIME, "dictPut", "(" + MAP + OBJECT + OBJECT + TOKEN + ")" + MAP);
+    }
+    call(RUNTIME, "toDict", "(" + MAP + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.IndexGet expr) {
+    token(expr.token);
+    compile(expr.object);
+    compile(expr.index);
+    call(OPERATIONS, "indexGet", "(" + TOKEN + OBJECT + OBJECT + ")" + OBJECT);
+    return null;
+  }
+
+  @Override
+  public Void visit(Expr.IndexSet expr) {
+    token(expr.token);
+    compile(expr.object);
+    compile(expr.index);
+    compile(expr.value);
+    call(OPERATIONS, "indexSet", "(" + TOKEN + OBJECT + OBJECT + OBJECT + ")" + OBJECT);
+    return null;
+  }
+}
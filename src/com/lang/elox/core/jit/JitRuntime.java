@@ -0,0 +1,195 @@
+package com.lang.elox.core.jit;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.InlineCache;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.interpreting.Operations;
+import com.lang.elox.core.interpreting.TailCall;
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.errors.RuntimeError;
+import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.representation.interfaces.INativeCallable;
+import com.lang.elox.representation.parsetime.Expr;
+import com.lang.elox.representation.parsetime.Stmt;
+import com.lang.elox.representation.runtime.instances.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Operations called from generated code that are too large to emit inline.
+// Each one matches the corresponding visit method of Interpreter.
+
+final class JitRuntime {
+  private JitRuntime() {}
+
+  static Object call(Interpreter interpreter, Object callee, Object[] arguments, Token paren) {
+    return function(callee, arguments, paren).call(interpreter, arguments);
+  }
+
+  static Object tailCall(Interpreter interpreter, Object callee, Object[] arguments, Token paren) {
+    return TailCall.of(interpreter, function(callee, arguments, paren), arguments);
+  }
+
+  private static ICallable function(Object callee, Object[] arguments, Token paren) {
+    if (!(callee instanceof ICallable))
+      throw new RuntimeError(paren, "Can call only functions.");
+    if (callee instanceof TClass)
+      throw new RuntimeError(paren, "Can't instantiate without 'new'.");
+
+    ICallable function = (ICallable) callee;
+    if (arguments.length != function.arity()) {
+      throw new RuntimeError(paren, "Expected " +
+          function.arity() + " arguments but got " +
+          arguments.length + ".");
+    }
+    return function;
+  }
+
+  // obj.name(...) is compiled to method, callee and invoke: the first two
+  // look the name up before the arguments run, the last makes the call. The
+  // method is an IMethod, a native method or null.
+  static Object method(Object object, InlineCache.Property cache) {
+    IMethod method = cache.method(object);
+    return method != null ? method : cache.nativeMethod(object);
+  }
+
+  static Object callee(Object object, Object method, InlineCache.Property cache) {
+    return method == null ? cache.get(object) : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  static Object invoke(Object object, Object method, Object callee,
+                       Interpreter interpreter, Object[] arguments, Token paren, Token name, boolean tail) {
+    if (method == null) {
+      return tail ? tailCall(interpreter, callee, arguments, paren) : call(interpreter, callee, arguments, paren);
+    }
+
+    if (method instanceof IMethod) {
+      Operations.checkArity(paren, ((IMethod) method).arity(), arguments.length);
+      if (tail) return TailCall.of(interpreter, (IMethod) method, (TInstance) object, arguments);
+      return ((IMethod) method).invoke(interpreter, (TInstance) object, arguments);
+    }
+
+    INativeCallable<Object> nativeMethod = (INativeCallable<Object>) method;
+    Operations.checkArity(paren, nativeMethod.arity(), arguments.length);
+    return nativeMethod.call(interpreter, object, name, arguments);
+  }
+
+  static Object construct(Interpreter interpreter, Object callee, Object[] arguments, Token paren) {
+    if (!(callee instanceof TClass)) {
+      throw new RuntimeError(paren, "Can't construct object from non-class.");
+    }
+
+    ICallable clazz = (ICallable) callee;
+    if (arguments.length != clazz.arity()) {
+      throw new RuntimeError(paren, "Expected " +
+          clazz.arity() + " arguments to constructor but got " +
+          arguments.length + ".");
+    }
+
+    return clazz.call(interpreter, arguments);
+  }
+
+  static Object getGlobal(Environment globals, Environment.Cell cell, Token name) {
+    return globals.get(cell, name);
+  }
+
+  static Object setGlobal(Environment globals, Environment.Cell cell, Token name, Object value) {
+    globals.assign(cell, name, value);
+    return value;
+  }
+
+  static Object setLocal(Environment environment, int depth, int slot, Object value) {
+    environment.assignAt(depth, slot, value);
+    return value;
+  }
+
+  static Object setBoxedLocal(Environment environment, int depth, int slot, Object value) {
+    environment.assignBoxedAt(depth, slot, value);
+    return value;
+  }
+
+  static Object setUpvalue(Environment environment, int index, Object value) {
+    environment.assignBoxedUpvalue(index, value);
+    return value;
+  }
+
+  static Object superMethod(Environment environment, Expr.Super expr) {
+    TClass superclass = (TClass) environment.getUpvalue(expr.upvalue);
+    TInstance object = (TInstance) (expr.receiverUpvalue != -1
+        ? environment.getUpvalue(expr.receiverUpvalue)
+        : environment.getAt(expr.depth - 1, expr.slot));
+    Token method = expr.method;
+    IMethod result = superclass.findMethod(object, method.lexeme);
+    if (result == null) {
+      throw new RuntimeError(method, "Undefined method '" + method.lexeme + "'.");
+    }
+
+    return result;
+  }
+
+  static Object checkInstance(Object object, Token name) {
+    if (!(object instanceof TInstance)) {
+      throw new RuntimeError(name, "Only instances have fields.");
+    }
+    return object;
+  }
+
+  static Object setProperty(Object object, Object value, Token name) {
+    ((TInstance) object).set(name, value);
+    return value;
+  }
+
+  static Object equal(Object left, Object right) {
+    return Operations.isEqual(left, right);
+  }
+
+  static Object notEqual(Object left, Object right) {
+    return !Operations.isEqual(left, right);
+  }
+
+  static Object not(Object right) {
+    return !Operations.isTruthy(right);
+  }
+
+  static Object list(Object[] elements) {
+    return new TList(new ArrayList<>(Arrays.asList(elements)));
+  }
+
+  static Map<Object, Object> dict() {
+    return new HashMap<>();
+  }
+
+  static Map<Object, Object> dictPut(Map<Object, Object> map, Object key, Object value, Token paren) {
+    Operations.validateDictKey(paren, key);
+    map.put(key, value);
+    return map;
+  }
+
+  static Object toDict(Map<Object, Object> map) {
+    return new TDict(map);
+  }
+
+  static Object function(Stmt.Function declaration, Environment environment) {
+    return new TFunction(declaration, environment.capture(declaration.captureDepths, declaration.captureSlots), false);
+  }
+
+  static Object lambda(Expr.Lambda declaration, Environment environment) {
+    return TLambda.of(declaration, environment);
+  }
+
+  static RuntimeException raise(Object value, Token token) {
+    return new TException(token, value);
+  }
+
+  // value bound to the catch parameter, anything that is not an Elox error
+  // is passed on
+  static Object caught(RuntimeException exception) {
+    if (exception instanceof RuntimeError) return new TException((RuntimeError) exception);
+    if (exception instanceof TException) return ((TException) exception).getValue();
+    throw exception;
+  }
+}
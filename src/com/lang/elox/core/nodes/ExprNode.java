@@ -0,0 +1,802 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.InlineCache;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.interpreting.Operations;
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.errors.RuntimeError;
+import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.representation.interfaces.INativeCallable;
+import com.lang.elox.representation.runtime.instances.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Executable expression nodes. Each node is built once by NodeCompiler with
+// its children, resolved slot and operator already bound.
+
+public abstract class ExprNode extends Node {
+  public abstract Object execute(Environment environment);
+
+  public static final class Constant extends ExprNode {
+    private final Object value;
+
+    Constant(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return value;
+    }
+  }
+
+  public static final class TypeLiteral extends ExprNode {
+    private final Token name;
+
+    TypeLiteral(Token name) {
+      this.name = name;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return Operations.typeLiteral(name);
+    }
+  }
+
+  // variables
+
+  public static final class LocalGet extends ExprNode {
+    private final int depth;
+    private final int slot;
+
+    LocalGet(int depth, int slot) {
+      this.depth = depth;
+      this.slot = slot;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return environment.getAt(depth, slot);
+    }
+  }
+
+  public static final class LocalSet extends ExprNode {
+    private final int depth;
+    private final int slot;
+    private ExprNode value;
+
+    LocalSet(int depth, int slot, ExprNode value) {
+      this.depth = depth;
+      this.slot = slot;
+      this.value = adopt(value);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object result = value.execute(environment);
+      environment.assignAt(depth, slot, result);
+      return result;
+    }
+  }
+
+  public static final class GlobalGet extends ExprNode {
+    private final Environment globals;
+    private final Environment.Cell cell;
+    private final Token name;
+
+    GlobalGet(Environment globals, Token name) {
+      this.globals = globals;
+      this.cell = globals.cell(name.lexeme);
+      this.name = name;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return globals.get(cell, name);
+    }
+  }
+
+  public static final class GlobalSet extends ExprNode {
+    private final Environment globals;
+    private final Environment.Cell cell;
+    private final Token name;
+    private ExprNode value;
+
+    GlobalSet(Environment globals, Token name, ExprNode value) {
+      this.globals = globals;
+      this.cell = globals.cell(name.lexeme);
+      this.name = name;
+      this.value = adopt(value);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object result = value.execute(environment);
+      globals.assign(cell, name, result);
+      return result;
+    }
+  }
+
+  // operators
+
+  static Binary binary(ExprNode left, ExprNode right, Token operator) {
+    switch (operator.type) {
+      case BIT_OR: return new BitOr(left, right, operator);
+      case BIT_XOR: return new BitXor(left, right, operator);
+      case BIT_LEFT: return new ShiftLeft(left, right, operator);
+      case BIT_RIGHT: return new ShiftRight(left, right, operator);
+      case BIT_AND: return new BitAnd(left, right, operator);
+      case NOT_EQUAL: return new NotEqual(left, right, operator);
+      case EQUAL_EQUAL: return new Equal(left, right, operator);
+      case IS: return new Is(left, right, operator);
+      case GREATER: return new Greater(left, right, operator);
+      case GREATER_EQUAL: return new GreaterEqual(left, right, operator);
+      case LESS: return new Less(left, right, operator);
+      case LESS_EQUAL: return new LessEqual(left, right, operator);
+      case PLUS: return new Add(left, right, operator);
+      case MINUS: return new Subtract(left, right, operator);
+      case STAR: return new Multiply(left, right, operator);
+      case SLASH: return new Divide(left, right, operator);
+      case REMAINDER: return new Remainder(left, right, operator);
+    }
+
+    throw new IllegalStateException("Unknown binary operator '" + operator.lexeme + "'.");
+  }
+
+  public static abstract class Binary extends ExprNode {
+    ExprNode left;
+    ExprNode right;
+    final Token operator;
+
+    Binary(ExprNode left, ExprNode right, Token operator) {
+      this.left = adopt(left);
+      this.right = adopt(right);
+      this.operator = operator;
+    }
+  }
+
+  public static final class Add extends Binary {
+    Add(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.add(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class Subtract extends Binary {
+    Subtract(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.subtract(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class Multiply extends Binary {
+    Multiply(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.multiply(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class Divide extends Binary {
+    Divide(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.divide(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class Remainder extends Binary {
+    Remainder(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.remainder(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class BitAnd extends Binary {
+    BitAnd(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.bitAnd(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class BitOr extends Binary {
+    BitOr(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.bitOr(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class BitXor extends Binary {
+    BitXor(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.bitXor(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class ShiftLeft extends Binary {
+    ShiftLeft(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.shiftLeft(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class ShiftRight extends Binary {
+    ShiftRight(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.shiftRight(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class Equal extends Binary {
+    Equal(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.isEqual(l, right.execute(environment));
+    }
+  }
+
+  public static final class NotEqual extends Binary {
+    NotEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return !Operations.isEqual(l, right.execute(environment));
+    }
+  }
+
+  public static final class Greater extends Binary {
+    Greater(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.greater(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class GreaterEqual extends Binary {
+    GreaterEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.greaterEqual(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class Less extends Binary {
+    Less(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.less(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class LessEqual extends Binary {
+    LessEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.lessEqual(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class Is extends Binary {
+    Is(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.is(operator, l, right.execute(environment));
+    }
+  }
+
+  public static final class Or extends Binary {
+    Or(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return Operations.isTruthy(l) ? l : right.execute(environment);
+    }
+  }
+
+  public static final class And extends Binary {
+    And(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      return !Operations.isTruthy(l) ? l : right.execute(environment);
+    }
+  }
+
+  public static final class Negate extends ExprNode {
+    private ExprNode right;
+    private final Token operator;
+
+    Negate(ExprNode right, Token operator) {
+      this.right = adopt(right);
+      this.operator = operator;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return Operations.negate(operator, right.execute(environment));
+    }
+  }
+
+  public static final class Complement extends ExprNode {
+    private ExprNode right;
+    private final Token operator;
+
+    Complement(ExprNode right, Token operator) {
+      this.right = adopt(right);
+      this.operator = operator;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return Operations.complement(operator, right.execute(environment));
+    }
+  }
+
+  public static final class Not extends ExprNode {
+    private ExprNode right;
+
+    Not(ExprNode right) {
+      this.right = adopt(right);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return !Operations.isTruthy(right.execute(environment));
+    }
+  }
+
+  // calls
+
+  public static final class Call extends ExprNode {
+    private final Interpreter interpreter;
+    private ExprNode callee;
+    private ExprNode[] arguments;
+    private final Token paren;
+    // made by a 'return', node functions are then left to the caller's
+    // trampoline, see NodeTailCall
+    private final boolean tail;
+
+    Call(Interpreter interpreter, ExprNode callee, ExprNode[] arguments, Token paren, boolean tail) {
+      this.interpreter = interpreter;
+      this.callee = adopt(callee);
+      this.arguments = adopt(arguments);
+      this.paren = paren;
+      this.tail = tail;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object function = callee.execute(environment);
+
+      if (function instanceof NodeFunction) {
+        NodeFunction target = (NodeFunction) function;
+        Environment frame = bindArguments(environment, arguments, paren, target.body, target.closure);
+        if (target.receiver != null) frame.define(target.body.arity, target.receiver);
+        return tail ? new NodeTailCall(target.body, frame) : target.invoke(frame);
+      }
+
+      if (function instanceof NodeLambda) {
+        NodeLambda target = (NodeLambda) function;
+        Environment frame = bindArguments(environment, arguments, paren, target.body, target.closure);
+        return tail ? new NodeTailCall(target.body, frame) : target.invoke(frame);
+      }
+
+      Object[] values = executeAll(environment, arguments);
+
+      if (!(function instanceof ICallable))
+        throw new RuntimeError(paren, "Can call only functions.");
+      if (function instanceof TClass)
+        throw new RuntimeError(paren, "Can't instantiate without 'new'.");
+
+      ICallable callable = (ICallable) function;
+      if (values.length != callable.arity()) {
+        throw new RuntimeError(paren, "Expected " +
+            callable.arity() + " arguments but got " +
+            values.length + ".");
+      }
+      return callable.call(interpreter, values);
+    }
+  }
+
+  static Object[] executeAll(Environment environment, ExprNode[] arguments) {
+    Object[] values = new Object[arguments.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = arguments[i].execute(environment);
+    }
+    return values;
+  }
+
+  // evaluates the arguments straight into the callee's frame
+  static Environment bindArguments(Environment environment, ExprNode[] arguments, Token paren,
+                                   FunctionBody body, Environment closure) {
+    Environment frame = new Environment(closure, body.frameSize);
+    for (int i = 0; i < arguments.length && i < body.frameSize; i++) {
+      frame.define(i, arguments[i].execute(environment));
+    }
+    for (int i = body.frameSize; i < arguments.length; i++) {
+      arguments[i].execute(environment);
+    }
+
+    if (arguments.length != body.arity) {
+      throw new RuntimeError(paren, "Expected " +
+          body.arity + " arguments but got " +
+          arguments.length + ".");
+    }
+    return frame;
+  }
+
+  // obj.name(...), runs methods on the receiver instead of binding them first
+  public static final class Invoke extends ExprNode {
+    private final Interpreter interpreter;
+    private ExprNode object;
+    private ExprNode[] arguments;
+    private final Token name;
+    private final Token paren;
+    private final InlineCache.Property cache;
+    private final boolean tail;
+
+    Invoke(Interpreter interpreter, ExprNode object, Token name, ExprNode[] arguments, Token paren, boolean tail) {
+      this.interpreter = interpreter;
+      this.object = adopt(object);
+      this.arguments = adopt(arguments);
+      this.name = name;
+      this.paren = paren;
+      this.cache = new InlineCache.Property(name);
+      this.tail = tail;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object receiver = object.execute(environment);
+      IMethod method = cache.method(receiver);
+
+      if (method instanceof NodeFunction) {
+        NodeFunction target = (NodeFunction) method;
+        Environment frame = bindArguments(environment, arguments, paren, target.body, target.closure);
+        frame.define(target.body.arity, receiver);
+        return tail ? new NodeTailCall(target.body, frame) : target.invoke(frame);
+      }
+
+      INativeCallable<Object> nativeMethod = method == null ? cache.nativeMethod(receiver) : null;
+      Object callee = method == null && nativeMethod == null ? cache.get(receiver) : null;
+      Object[] values = executeAll(environment, arguments);
+
+      if (method != null) {
+        Operations.checkArity(paren, method.arity(), values.length);
+        return method.invoke(interpreter, (TInstance) receiver, values);
+      }
+      if (nativeMethod != null) {
+        Operations.checkArity(paren, nativeMethod.arity(), values.length);
+        return nativeMethod.call(interpreter, receiver, name, values);
+      }
+      return Operations.callable(paren, callee, values.length).call(interpreter, values);
+    }
+  }
+
+  public static final class New extends ExprNode {
+    private final Interpreter interpreter;
+    private ExprNode clazz;
+    private ExprNode[] arguments;
+    private final Token paren;
+
+    New(Interpreter interpreter, ExprNode clazz, ExprNode[] arguments, Token paren) {
+      this.interpreter = interpreter;
+      this.clazz = adopt(clazz);
+      this.arguments = adopt(arguments);
+      this.paren = paren;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object callee = clazz.execute(environment);
+      Object[] values = executeAll(environment, arguments);
+
+      if (!(callee instanceof TClass)) {
+        throw new RuntimeError(paren, "Can't construct object from non-class.");
+      }
+
+      TClass target = (TClass) callee;
+      if (values.length != target.arity()) {
+        throw new RuntimeError(paren, "Expected " +
+            target.arity() + " arguments to constructor but got " +
+            values.length + ".");
+      }
+
+      return target.call(interpreter, values);
+    }
+  }
+
+  public static final class Lambda extends ExprNode {
+    private final FunctionBody body;
+
+    Lambda(FunctionBody body) {
+      this.body = body;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return new NodeLambda(body, environment);
+    }
+  }
+
+  public static final class Function extends ExprNode {
+    private final FunctionBody body;
+
+    Function(FunctionBody body) {
+      this.body = body;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return new NodeFunction(body, environment);
+    }
+  }
+
+  // objects
+
+  public static final class Class extends ExprNode {
+    private final String name;
+    private ExprNode superclass;
+    private final Token superclassName;
+    private final FunctionBody[] methods;
+
+    Class(String name, ExprNode superclass, Token superclassName, FunctionBody[] methods) {
+      this.name = name;
+      this.superclass = adopt(superclass);
+      this.superclassName = superclassName;
+      this.methods = methods;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object parent = null;
+      if (superclass != null) {
+        parent = superclass.execute(environment);
+        if (!(parent instanceof TClass)) {
+          throw new RuntimeError(superclassName, "Superclass must be a class.");
+        }
+
+        environment = new Environment(environment, 1);
+        environment.define(0, parent);
+      }
+
+      Map<String, IMethod> table = new HashMap<>();
+      for (FunctionBody method : methods) {
+        table.put(method.name, new NodeFunction(method, environment));
+      }
+
+      return new TClass(name, (TClass) parent, table);
+    }
+  }
+
+  public static final class GetProperty extends ExprNode {
+    private ExprNode object;
+    private final Token name;
+
+    GetProperty(ExprNode object, Token name) {
+      this.object = adopt(object);
+      this.name = name;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return Operations.getProperty(name, object.execute(environment));
+    }
+  }
+
+  public static final class SetProperty extends ExprNode {
+    private ExprNode object;
+    private ExprNode value;
+    private final Token name;
+
+    SetProperty(ExprNode object, ExprNode value, Token name) {
+      this.object = adopt(object);
+      this.value = adopt(value);
+      this.name = name;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object target = object.execute(environment);
+      if (!(target instanceof TInstance)) {
+        throw new RuntimeError(name, "Only instances have fields.");
+      }
+
+      Object result = value.execute(environment);
+      ((TInstance) target).set(name, result);
+      return result;
+    }
+  }
+
+  public static final class SuperGet extends ExprNode {
+    private final int depth;
+    private final int slot;
+    private final Token method;
+
+    SuperGet(int depth, int slot, Token method) {
+      this.depth = depth;
+      this.slot = slot;
+      this.method = method;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      TClass superclass = (TClass) environment.getAt(depth, 0);
+      TInstance object = (TInstance) environment.getAt(depth - 1, slot);
+      IMethod result = superclass.findMethod(object, method.lexeme);
+      if (result == null) {
+        throw new RuntimeError(method, "Undefined method '" + method.lexeme + "'.");
+      }
+
+      return result;
+    }
+  }
+
+  public static final class ListLiteral extends ExprNode {
+    private ExprNode[] elements;
+
+    ListLiteral(ExprNode[] elements) {
+      this.elements = adopt(elements);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      List<Object> values = new ArrayList<>(elements.length);
+      for (ExprNode element : elements) {
+        values.add(element.execute(environment));
+      }
+
+      return new TList(values);
+    }
+  }
+
+  public static final class DictLiteral extends ExprNode {
+    private ExprNode[] keys;
+    private ExprNode[] values;
+    private final Token paren;
+
+    DictLiteral(ExprNode[] keys, ExprNode[] values, Token paren) {
+      this.keys = adopt(keys);
+      this.values = adopt(values);
+      this.paren = paren;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      HashMap<Object, Object> map = new HashMap<>();
+      for (int i = 0; i < keys.length; i++) {
+        Object key = keys[i].execute(environment);
+        Object value = values[i].execute(environment);
+        Operations.validateDictKey(paren, key);
+        map.put(key, value);
+      }
+
+      return new TDict(map);
+    }
+  }
+
+  public static final class IndexGet extends ExprNode {
+    private ExprNode object;
+    private ExprNode index;
+    private final Token token;
+
+    IndexGet(ExprNode object, ExprNode index, Token token) {
+      this.object = adopt(object);
+      this.index = adopt(index);
+      this.token = token;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object target = object.execute(environment);
+      return Operations.indexGet(token, target, index.execute(environment));
+    }
+  }
+
+  public static final class IndexSet extends ExprNode {
+    private ExprNode object;
+    private ExprNode index;
+    private ExprNode value;
+    private final Token token;
+
+    IndexSet(ExprNode object, ExprNode index, ExprNode value, Token token) {
+      this.object = adopt(object);
+      this.index = adopt(index);
+      this.value = adopt(value);
+      this.token = token;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object target = object.execute(environment);
+      Object key = index.execute(environment);
+      return Operations.indexSet(token, target, key, value.execute(environment));
+    }
+  }
+}
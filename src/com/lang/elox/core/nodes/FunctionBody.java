@@ -0,0 +1,41 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.Completion;
+
+// Executable body shared by every function or lambda value created from the
+// same declaration.
+
+final class FunctionBody {
+  final String name;
+  final int arity;
+  final int frameSize;
+  // initializers give their receiver, kept in the slot after the parameters
+  private final boolean initializer;
+  private final StmtNode[] statements;
+
+  FunctionBody(String name, int arity, int frameSize, boolean initializer, StmtNode[] statements) {
+    this.name = name;
+    this.arity = arity;
+    this.frameSize = frameSize;
+    this.initializer = initializer;
+    this.statements = statements;
+  }
+
+  // the result may be a NodeTailCall, see run
+  Object execute(Environment environment) {
+    Object completion = StmtNode.executeAll(statements, environment);
+    if (initializer) return environment.valueAt(arity);
+    return completion == Completion.NORMAL ? null : completion;
+  }
+
+  // runs the body, then the tail calls it returns until one gives a value
+  Object run(Environment environment) {
+    Object result = execute(environment);
+    while (result instanceof NodeTailCall) {
+      NodeTailCall call = (NodeTailCall) result;
+      result = call.body.execute(call.frame);
+    }
+    return result;
+  }
+}
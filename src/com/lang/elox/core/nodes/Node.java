@@ -0,0 +1,55 @@
+package com.lang.elox.core.nodes;
+
+import java.lang.reflect.Field;
+
+// Common base of executable nodes. Every node knows its parent, so a node
+// can replace itself in the tree with a version specialized for the values
+// it has seen. Fields holding child nodes are not final for that reason.
+
+public abstract class Node {
+  private Node parent;
+
+  protected final <T extends Node> T adopt(T child) {
+    if (child != null) ((Node) child).parent = this;
+    return child;
+  }
+
+  protected final <T extends Node> T[] adopt(T[] children) {
+    for (T child : children) adopt(child);
+    return children;
+  }
+
+  // rewrites are rare (a few per node at most), so the child field is looked
+  // up reflectively instead of every node implementing its own replaceChild
+  protected final <T extends Node> T replace(T replacement) {
+    if (parent == null) throw new IllegalStateException("Can't replace a root node.");
+
+    try {
+      for (Class<?> type = parent.getClass(); type != Node.class; type = type.getSuperclass()) {
+        for (Field field : type.getDeclaredFields()) {
+          if (Node.class.isAssignableFrom(field.getType())) {
+            field.setAccessible(true);
+            if (field.get(parent) == this) {
+              field.set(parent, parent.adopt(replacement));
+              return replacement;
+            }
+          } else if (Node[].class.isAssignableFrom(field.getType())) {
+            field.setAccessible(true);
+            Node[] children = (Node[]) field.get(parent);
+            for (int i = 0; i < children.length; i++) {
+              if (children[i] == this) {
+                children[i] = parent.adopt(replacement);
+                return replacement;
+              }
+            }
+          }
+        }
+      }
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+
+    // a recursive execution of the same site already rewrote it
+    return replacement;
+  }
+}
@@ -0,0 +1,291 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.representation.interfaces.ExprVisitor;
+import com.lang.elox.representation.interfaces.StmtVisitor;
+import com.lang.elox.representation.parsetime.Expr;
+import com.lang.elox.representation.parsetime.Stmt;
+import com.lang.elox.utils.ErrorReporter;
+
+import java.util.List;
+import java.util.Map;
+
+// Converts resolved statements into executable nodes. The visitor runs once
+// per declaration, after that execution never goes through accept or
+// switches on an operator.
+
+public final class NodeCompiler implements ExprVisitor<ExprNode>, StmtVisitor<StmtNode> {
+  private final Interpreter interpreter;
+  private final ErrorReporter reporter;
+  private final Environment globals;
+
+  public NodeCompiler(Interpreter interpreter, ErrorReporter reporter) {
+    this.interpreter = interpreter;
+    this.reporter = reporter;
+    this.globals = interpreter.getGlobals();
+  }
+
+  public StmtNode[] compile(List<Stmt> statements) {
+    StmtNode[] nodes = new StmtNode[statements.size()];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = statements.get(i).accept(this);
+    }
+    return nodes;
+  }
+
+  private ExprNode compile(Expr expr) {
+    return expr.accept(this);
+  }
+
+  private ExprNode[] compileAll(List<Expr> expressions) {
+    ExprNode[] nodes = new ExprNode[expressions.size()];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = compile(expressions.get(i));
+    }
+    return nodes;
+  }
+
+  private FunctionBody function(Stmt.Function stmt, boolean method) {
+    boolean initializer = method && stmt.name.lexeme.equals("__init__");
+    return new FunctionBody(stmt.name.lexeme, stmt.params.size(), stmt.frameSize, initializer, compile(stmt.body));
+  }
+
+  private StmtNode define(Token name, int slot, ExprNode value) {
+    if (slot != -1) return new StmtNode.DefineLocal(slot, value);
+    return new StmtNode.DefineGlobal(globals, name, value);
+  }
+
+  // statements
+
+  @Override
+  public StmtNode visit(Stmt.Expression stmt) {
+    return new StmtNode.Expression(compile(stmt.expression));
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Var stmt) {
+    ExprNode value = stmt.initializer != null
+        ? compile(stmt.initializer)
+        : new ExprNode.Constant(null);
+    return define(stmt.name, stmt.slot, value);
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Block stmt) {
+    return block(stmt.frameSize, compile(stmt.statements));
+  }
+
+  @Override
+  public StmtNode visit(Stmt.For stmt) {
+    StmtNode loop = stmt.loop.accept(this);
+    if (stmt.initializer == null) return block(stmt.frameSize, new StmtNode[] { loop });
+    return block(stmt.frameSize, new StmtNode[] { stmt.initializer.accept(this), loop });
+  }
+
+  private static StmtNode block(int frameSize, StmtNode[] statements) {
+    if (frameSize == 0) return new StmtNode.Sequence(statements);
+    return new StmtNode.Block(frameSize, statements);
+  }
+
+  @Override
+  public StmtNode visit(Stmt.If stmt) {
+    StmtNode elseBranch = stmt.elseBranch != null ? stmt.elseBranch.accept(this) : null;
+    return new StmtNode.If(compile(stmt.condition), stmt.thenBranch.accept(this), elseBranch);
+  }
+
+  @Override
+  public StmtNode visit(Stmt.While stmt) {
+    ExprNode increment = stmt.increment != null ? compile(stmt.increment) : null;
+    return new StmtNode.While(compile(stmt.condition), stmt.body.accept(this), increment);
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Break stmt) {
+    return new StmtNode.Break();
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Continue stmt) {
+    return new StmtNode.Continue();
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Function stmt) {
+    return define(stmt.name, stmt.slot, new ExprNode.Function(function(stmt, false)));
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Return stmt) {
+    return new StmtNode.Return(stmt.value != null ? compile(stmt.value) : null);
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Class stmt) {
+    ExprNode superclass = stmt.superclass != null ? compile(stmt.superclass) : null;
+    FunctionBody[] methods = new FunctionBody[stmt.methods.size()];
+    for (int i = 0; i < methods.length; i++) {
+      methods[i] = function(stmt.methods.get(i), true);
+    }
+
+    ExprNode clazz = new ExprNode.Class(stmt.name.lexeme, superclass,
+        stmt.superclass != null ? stmt.superclass.name : null, methods);
+    return define(stmt.name, stmt.slot, clazz);
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Import stmt) {
+    return new StmtNode.Import(reporter, globals, compile(stmt.statements), stmt.locals, stmt.name);
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Try stmt) {
+    return new StmtNode.Try(stmt.tryFrameSize, compile(stmt.tryStmt),
+        stmt.catchFrameSize, compile(stmt.catchStmt));
+  }
+
+  @Override
+  public StmtNode visit(Stmt.Throw stmt) {
+    return new StmtNode.Throw(compile(stmt.expr), stmt.token);
+  }
+
+  // expressions
+
+  @Override
+  public ExprNode visit(Expr.Literal expr) {
+    return new ExprNode.Constant(expr.value);
+  }
+
+  @Override
+  public ExprNode visit(Expr.StringLiteral expr) {
+    return new ExprNode.Constant(expr.constant);
+  }
+
+  @Override
+  public ExprNode visit(Expr.TypeLiteral expr) {
+    return new ExprNode.TypeLiteral(expr.name);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Grouping expr) {
+    return compile(expr.expr);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Variable expr) {
+    if (expr.depth != -1) return new ExprNode.LocalGet(expr.depth, expr.slot);
+    return new ExprNode.GlobalGet(globals, expr.name);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Assign expr) {
+    ExprNode value = compile(expr.value);
+    if (expr.depth != -1) return new ExprNode.LocalSet(expr.depth, expr.slot, value);
+    return new ExprNode.GlobalSet(globals, expr.name, value);
+  }
+
+  @Override
+  public ExprNode visit(Expr.This expr) {
+    return new ExprNode.LocalGet(expr.depth, expr.slot);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Super expr) {
+    return new ExprNode.SuperGet(expr.depth, expr.slot, expr.method);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Binary expr) {
+    ExprNode left = compile(expr.left);
+    ExprNode right = compile(expr.right);
+    if (Specialized.isSpecializable(expr.operator)) {
+      return new Specialized.UninitializedBinary(left, right, expr.operator);
+    }
+
+    return ExprNode.binary(left, right, expr.operator);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Unary expr) {
+    ExprNode right = compile(expr.right);
+    switch (expr.operator.type) {
+      case NOT: return new ExprNode.Not(right);
+      case MINUS: return new Specialized.UninitializedNegate(right, expr.operator);
+      case BIT_COMPL: return new ExprNode.Complement(right, expr.operator);
+    }
+
+    throw new IllegalStateException("Unknown unary operator '" + expr.operator.lexeme + "'.");
+  }
+
+  @Override
+  public ExprNode visit(Expr.Logical expr) {
+    ExprNode left = compile(expr.left);
+    ExprNode right = compile(expr.right);
+    switch (expr.operator.type) {
+      case OR: return new ExprNode.Or(left, right, expr.operator);
+      case AND: return new ExprNode.And(left, right, expr.operator);
+    }
+
+    throw new IllegalStateException("Unknown logical operator '" + expr.operator.lexeme + "'.");
+  }
+
+  @Override
+  public ExprNode visit(Expr.Call expr) {
+    return new ExprNode.Call(interpreter, compile(expr.callee), compileAll(expr.arguments), expr.paren, expr.tailCall);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Invoke expr) {
+    return new ExprNode.Invoke(interpreter, compile(expr.object), expr.name, compileAll(expr.arguments), expr.paren, expr.tailCall);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Instance expr) {
+    return new ExprNode.New(interpreter, compile(expr.clazz), compileAll(expr.arguments), expr.paren);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Lambda expr) {
+    return new ExprNode.Lambda(new FunctionBody("lambda", expr.params.size(), expr.frameSize, false, compile(expr.body)));
+  }
+
+  @Override
+  public ExprNode visit(Expr.Get expr) {
+    return new Specialized.UninitializedGet(compile(expr.object), expr.name);
+  }
+
+  @Override
+  public ExprNode visit(Expr.Set expr) {
+    return new ExprNode.SetProperty(compile(expr.object), compile(expr.value), expr.name);
+  }
+
+  @Override
+  public ExprNode visit(Expr.ListLiteral expr) {
+    return new ExprNode.ListLiteral(compileAll(expr.elements));
+  }
+
+  @Override
+  public ExprNode visit(Expr.DictLiteral expr) {
+    ExprNode[] keys = new ExprNode[expr.map.size()];
+    ExprNode[] values = new ExprNode[expr.map.size()];
+    int i = 0;
+    for (Map.Entry<Expr, Expr> entry : expr.map.entrySet()) {
+      keys[i] = compile(entry.getKey());
+      values[i] = compile(entry.getValue());
+      i++;
+    }
+
+    return new ExprNode.DictLiteral(keys, values, expr.paren);
+  }
+
+  @Override
+  public ExprNode visit(Expr.IndexGet expr) {
+    return new ExprNode.IndexGet(compile(expr.object), compile(expr.index), expr.token);
+  }
+
+  @Override
+  public ExprNode visit(Expr.IndexSet expr) {
+    return new ExprNode.IndexSet(compile(expr.object), compile(expr.index), compile(expr.value), expr.token);
+  }
+}
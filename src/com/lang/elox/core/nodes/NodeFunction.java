@@ -0,0 +1,59 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.representation.runtime.classes.TFunctionClass;
+import com.lang.elox.representation.runtime.instances.TInstance;
+
+final class NodeFunction extends TFunctionClass implements IMethod {
+  final FunctionBody body;
+  final Environment closure;
+  // set on bound methods
+  final TInstance receiver;
+
+  NodeFunction(FunctionBody body, Environment closure) {
+    this(body, closure, null);
+  }
+
+  private NodeFunction(FunctionBody body, Environment closure, TInstance receiver) {
+    this.body = body;
+    this.closure = closure;
+    this.receiver = receiver;
+  }
+
+  @Override
+  public NodeFunction bind(TInstance instance) {
+    return new NodeFunction(body, closure, instance);
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, Object... arguments) {
+    return invoke(interpreter, receiver, arguments);
+  }
+
+  @Override
+  public Object invoke(Interpreter interpreter, TInstance instance, Object[] arguments) {
+    Environment environment = new Environment(closure, body.frameSize);
+    for (int i = 0; i < arguments.length; i++) {
+      environment.define(i, arguments[i]);
+    }
+    if (instance != null) environment.define(body.arity, instance);
+
+    return invoke(environment);
+  }
+
+  Object invoke(Environment environment) {
+    return body.run(environment);
+  }
+
+  @Override
+  public int arity() {
+    return body.arity;
+  }
+
+  @Override
+  public String toString() {
+    return "[Function: " + body.name + "]";
+  }
+}
@@ -0,0 +1,42 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.errors.RuntimeError;
+import com.lang.elox.representation.parsetime.Stmt;
+import com.lang.elox.representation.runtime.instances.TException;
+import com.lang.elox.utils.ErrorReporter;
+
+import java.util.List;
+
+// Runs a program by converting it to executable nodes first. Globals and
+// natives are shared with the tree-walking interpreter.
+
+public final class NodeInterpreter {
+  private final Interpreter interpreter;
+  private final ErrorReporter reporter;
+  private final Environment globals;
+
+  public NodeInterpreter(Interpreter interpreter, ErrorReporter reporter) {
+    this.interpreter = interpreter;
+    this.reporter = reporter;
+    this.globals = interpreter.getGlobals();
+  }
+
+  public void interpret(List<Stmt> statements) {
+    try {
+      StmtNode[] program = new NodeCompiler(interpreter, reporter).compile(statements);
+      for (StmtNode statement : program) {
+        statement.execute(globals);
+      }
+    } catch (RuntimeError error) {
+      reporter.runtimeError(error);
+    } catch (TException error) {
+      reporter.runtimeError(new RuntimeError(error.getToken(), "Error: " + error.getValue()));
+    } catch (StackOverflowError e) {
+      reporter.error("Error: stack overflow.");
+    } catch (Exception e) {
+      reporter.error("Error: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.representation.runtime.classes.TLambdaClass;
+
+final class NodeLambda extends TLambdaClass implements ICallable {
+  final FunctionBody body;
+  final Environment closure;
+
+  NodeLambda(FunctionBody body, Environment closure) {
+    this.body = body;
+    this.closure = closure;
+  }
+
+  @Override
+  public Object call(Interpreter interpreter, Object... arguments) {
+    Environment environment = new Environment(closure, body.frameSize);
+    for (int i = 0; i < arguments.length; i++) {
+      environment.define(i, arguments[i]);
+    }
+
+    return invoke(environment);
+  }
+
+  Object invoke(Environment environment) {
+    return body.run(environment);
+  }
+
+  @Override
+  public int arity() {
+    return body.arity;
+  }
+
+  @Override
+  public String toString() {
+    return "[Lambda]";
+  }
+}
@@ -0,0 +1,18 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+
+// A call of a node function or lambda made by a 'return', with the frame
+// its arguments were bound into. The function left returns it instead of
+// running the call, FunctionBody.run makes it once that function's Java
+// frame is gone.
+
+final class NodeTailCall {
+  final FunctionBody body;
+  final Environment frame;
+
+  NodeTailCall(FunctionBody body, Environment frame) {
+    this.body = body;
+    this.frame = frame;
+  }
+}
@@ -0,0 +1,523 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.Operations;
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.representation.runtime.instances.Shape;
+import com.lang.elox.representation.runtime.instances.TInstance;
+import com.lang.elox.representation.runtime.instances.TString;
+
+// Type specialized versions of operator and property nodes. A site starts
+// uninitialized, rewrites itself after its first execution into the version
+// matching the operand types it saw, and falls back to the generic node from
+// ExprNode once a guard fails.
+
+final class Specialized {
+  private Specialized() {}
+
+  static boolean isSpecializable(Token operator) {
+    switch (operator.type) {
+      case PLUS: case MINUS: case STAR: case SLASH: case REMAINDER:
+      case GREATER: case GREATER_EQUAL: case LESS: case LESS_EQUAL:
+        return true;
+    }
+
+    return false;
+  }
+
+  private static ExprNode.Binary specialize(ExprNode left, ExprNode right, Token operator, Object l, Object r) {
+    if (l instanceof Integer && r instanceof Integer) {
+      switch (operator.type) {
+        case PLUS: return new IntAdd(left, right, operator);
+        case MINUS: return new IntSubtract(left, right, operator);
+        case STAR: return new IntMultiply(left, right, operator);
+        case SLASH: return new IntDivide(left, right, operator);
+        case REMAINDER: return new IntRemainder(left, right, operator);
+        case GREATER: return new IntGreater(left, right, operator);
+        case GREATER_EQUAL: return new IntGreaterEqual(left, right, operator);
+        case LESS: return new IntLess(left, right, operator);
+        case LESS_EQUAL: return new IntLessEqual(left, right, operator);
+      }
+    } else if (l instanceof Double && r instanceof Double) {
+      switch (operator.type) {
+        case PLUS: return new DoubleAdd(left, right, operator);
+        case MINUS: return new DoubleSubtract(left, right, operator);
+        case STAR: return new DoubleMultiply(left, right, operator);
+        case SLASH: return new DoubleDivide(left, right, operator);
+        case GREATER: return new DoubleGreater(left, right, operator);
+        case GREATER_EQUAL: return new DoubleGreaterEqual(left, right, operator);
+        case LESS: return new DoubleLess(left, right, operator);
+        case LESS_EQUAL: return new DoubleLessEqual(left, right, operator);
+      }
+    } else if (l instanceof TString && r instanceof TString) {
+      switch (operator.type) {
+        case PLUS: return new StringAdd(left, right, operator);
+        case GREATER: return new StringGreater(left, right, operator);
+        case GREATER_EQUAL: return new StringGreaterEqual(left, right, operator);
+        case LESS: return new StringLess(left, right, operator);
+        case LESS_EQUAL: return new StringLessEqual(left, right, operator);
+      }
+    }
+
+    return ExprNode.binary(left, right, operator);
+  }
+
+  static final class UninitializedBinary extends ExprNode.Binary {
+    UninitializedBinary(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      Object result = Operations.binary(operator, l, r);
+      replace(specialize(left, right, operator, l, r));
+      return result;
+    }
+  }
+
+  // called by a specialized node whose guard failed, the operands were
+  // already evaluated so the result is computed here rather than by the
+  // replacement
+  private static Object generalize(ExprNode.Binary node, Object l, Object r) {
+    node.replace(ExprNode.binary(node.left, node.right, node.operator));
+    return Operations.binary(node.operator, l, r);
+  }
+
+  // int x int
+
+  static final class IntAdd extends ExprNode.Binary {
+    IntAdd(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l + (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class IntSubtract extends ExprNode.Binary {
+    IntSubtract(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l - (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class IntMultiply extends ExprNode.Binary {
+    IntMultiply(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l * (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class IntDivide extends ExprNode.Binary {
+    IntDivide(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l / (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class IntRemainder extends ExprNode.Binary {
+    IntRemainder(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l % (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class IntGreater extends ExprNode.Binary {
+    IntGreater(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l > (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class IntGreaterEqual extends ExprNode.Binary {
+    IntGreaterEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l >= (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class IntLess extends ExprNode.Binary {
+    IntLess(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l < (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class IntLessEqual extends ExprNode.Binary {
+    IntLessEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Integer && r instanceof Integer) return (int) l <= (int) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  // double x double
+
+  static final class DoubleAdd extends ExprNode.Binary {
+    DoubleAdd(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Double && r instanceof Double) return (double) l + (double) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class DoubleSubtract extends ExprNode.Binary {
+    DoubleSubtract(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Double && r instanceof Double) return (double) l - (double) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class DoubleMultiply extends ExprNode.Binary {
+    DoubleMultiply(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Double && r instanceof Double) return (double) l * (double) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class DoubleDivide extends ExprNode.Binary {
+    DoubleDivide(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Double && r instanceof Double) return (double) l / (double) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class DoubleGreater extends ExprNode.Binary {
+    DoubleGreater(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Double && r instanceof Double) return (double) l > (double) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class DoubleGreaterEqual extends ExprNode.Binary {
+    DoubleGreaterEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Double && r instanceof Double) return (double) l >= (double) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class DoubleLess extends ExprNode.Binary {
+    DoubleLess(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Double && r instanceof Double) return (double) l < (double) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class DoubleLessEqual extends ExprNode.Binary {
+    DoubleLessEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof Double && r instanceof Double) return (double) l <= (double) r;
+      return generalize(this, l, r);
+    }
+  }
+
+  // string x string
+
+  static final class StringAdd extends ExprNode.Binary {
+    StringAdd(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof TString && r instanceof TString)
+        return new TString(((TString) l).string() + ((TString) r).string());
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class StringGreater extends ExprNode.Binary {
+    StringGreater(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof TString && r instanceof TString)
+        return ((TString) l).string().compareTo(((TString) r).string()) > 0;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class StringGreaterEqual extends ExprNode.Binary {
+    StringGreaterEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof TString && r instanceof TString)
+        return ((TString) l).string().compareTo(((TString) r).string()) >= 0;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class StringLess extends ExprNode.Binary {
+    StringLess(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof TString && r instanceof TString)
+        return ((TString) l).string().compareTo(((TString) r).string()) < 0;
+      return generalize(this, l, r);
+    }
+  }
+
+  static final class StringLessEqual extends ExprNode.Binary {
+    StringLessEqual(ExprNode left, ExprNode right, Token operator) {
+      super(left, right, operator);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object l = left.execute(environment);
+      Object r = right.execute(environment);
+      if (l instanceof TString && r instanceof TString)
+        return ((TString) l).string().compareTo(((TString) r).string()) <= 0;
+      return generalize(this, l, r);
+    }
+  }
+
+  // unary minus
+
+  static final class UninitializedNegate extends ExprNode {
+    private ExprNode right;
+    private final Token operator;
+
+    UninitializedNegate(ExprNode right, Token operator) {
+      this.right = adopt(right);
+      this.operator = operator;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object value = right.execute(environment);
+      Object result = Operations.negate(operator, value);
+      if (value instanceof Integer) {
+        replace(new IntNegate(right, operator));
+      } else if (value instanceof Double) {
+        replace(new DoubleNegate(right, operator));
+      } else {
+        replace(new ExprNode.Negate(right, operator));
+      }
+      return result;
+    }
+  }
+
+  static final class IntNegate extends ExprNode {
+    private ExprNode right;
+    private final Token operator;
+
+    IntNegate(ExprNode right, Token operator) {
+      this.right = adopt(right);
+      this.operator = operator;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object value = right.execute(environment);
+      if (value instanceof Integer) return - (int) value;
+      replace(new ExprNode.Negate(right, operator));
+      return Operations.negate(operator, value);
+    }
+  }
+
+  static final class DoubleNegate extends ExprNode {
+    private ExprNode right;
+    private final Token operator;
+
+    DoubleNegate(ExprNode right, Token operator) {
+      this.right = adopt(right);
+      this.operator = operator;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object value = right.execute(environment);
+      if (value instanceof Double) return - (double) value;
+      replace(new ExprNode.Negate(right, operator));
+      return Operations.negate(operator, value);
+    }
+  }
+
+  // property access
+
+  static final class UninitializedGet extends ExprNode {
+    private ExprNode object;
+    private final Token name;
+
+    UninitializedGet(ExprNode object, Token name) {
+      this.object = adopt(object);
+      this.name = name;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object value = object.execute(environment);
+      Object result = Operations.getProperty(name, value);
+      if (value instanceof TInstance) {
+        replace(new InstanceGet(object, name));
+      } else {
+        replace(new ExprNode.GetProperty(object, name));
+      }
+      return result;
+    }
+  }
+
+  // remembers the slot of the field in the last shape seen, instances of
+  // that shape read it straight from their value array
+  static final class InstanceGet extends ExprNode {
+    private ExprNode object;
+    private final Token name;
+    private Shape shape;
+    private int slot;
+
+    InstanceGet(ExprNode object, Token name) {
+      this.object = adopt(object);
+      this.name = name;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object value = object.execute(environment);
+      if (value instanceof TInstance) {
+        TInstance instance = (TInstance) value;
+        if (instance.getShape() == shape) return instance.getField(slot);
+
+        int slot = instance.getShape().slotOf(name.lexeme);
+        if (slot == -1) return instance.get(name);
+        this.shape = instance.getShape();
+        this.slot = slot;
+        return instance.getField(slot);
+      }
+      replace(new ExprNode.GetProperty(object, name));
+      return Operations.getProperty(name, value);
+    }
+  }
+}
@@ -0,0 +1,260 @@
+package com.lang.elox.core.nodes;
+
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.Operations;
+import com.lang.elox.core.scanning.Token;
+import com.lang.elox.errors.RuntimeError;
+import com.lang.elox.representation.runtime.instances.TException;
+import com.lang.elox.utils.ErrorReporter;
+
+import java.util.List;
+
+import static com.lang.elox.core.interpreting.Completion.*;
+
+// Executable statement nodes. Each one returns its Completion, or the value
+// of an executed return, which is passed up to the enclosing function body.
+
+public abstract class StmtNode extends Node {
+  public abstract Object execute(Environment environment);
+
+  static Object executeAll(StmtNode[] statements, Environment environment) {
+    for (StmtNode statement : statements) {
+      Object completion = statement.execute(environment);
+      if (completion != NORMAL) return completion;
+    }
+
+    return NORMAL;
+  }
+
+  public static final class Expression extends StmtNode {
+    private ExprNode expression;
+
+    Expression(ExprNode expression) {
+      this.expression = adopt(expression);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      expression.execute(environment);
+      return NORMAL;
+    }
+  }
+
+  public static final class DefineLocal extends StmtNode {
+    private final int slot;
+    private ExprNode value;
+
+    DefineLocal(int slot, ExprNode value) {
+      this.slot = slot;
+      this.value = adopt(value);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      environment.define(slot, value.execute(environment));
+      return NORMAL;
+    }
+  }
+
+  public static final class DefineGlobal extends StmtNode {
+    private final Environment globals;
+    private final Environment.Cell cell;
+    private ExprNode value;
+
+    DefineGlobal(Environment globals, Token name, ExprNode value) {
+      this.globals = globals;
+      this.cell = globals.cell(name.lexeme);
+      this.value = adopt(value);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      globals.define(cell, value.execute(environment));
+      return NORMAL;
+    }
+  }
+
+  public static final class Block extends StmtNode {
+    private final int frameSize;
+    private StmtNode[] statements;
+
+    Block(int frameSize, StmtNode[] statements) {
+      this.frameSize = frameSize;
+      this.statements = adopt(statements);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return executeAll(statements, new Environment(environment, frameSize));
+    }
+  }
+
+  // a block without a frame of its own
+  public static final class Sequence extends StmtNode {
+    private StmtNode[] statements;
+
+    Sequence(StmtNode[] statements) {
+      this.statements = adopt(statements);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      return executeAll(statements, environment);
+    }
+  }
+
+  public static final class If extends StmtNode {
+    private ExprNode condition;
+    private StmtNode thenBranch;
+    private StmtNode elseBranch;
+
+    If(ExprNode condition, StmtNode thenBranch, StmtNode elseBranch) {
+      this.condition = adopt(condition);
+      this.thenBranch = adopt(thenBranch);
+      this.elseBranch = adopt(elseBranch);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      if (Operations.isTruthy(condition.execute(environment))) {
+        return thenBranch.execute(environment);
+      } else if (elseBranch != null) {
+        return elseBranch.execute(environment);
+      }
+
+      return NORMAL;
+    }
+  }
+
+  public static final class While extends StmtNode {
+    private ExprNode condition;
+    private StmtNode body;
+    private ExprNode increment;
+
+    While(ExprNode condition, StmtNode body, ExprNode increment) {
+      this.condition = adopt(condition);
+      this.body = adopt(body);
+      this.increment = adopt(increment);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      while (Operations.isTruthy(condition.execute(environment))) {
+        Object completion = body.execute(environment);
+        if (completion != NORMAL) {
+          if (completion == BREAK) break;
+          if (completion != CONTINUE) return completion;
+        }
+        if (increment != null) increment.execute(environment);
+      }
+
+      return NORMAL;
+    }
+  }
+
+  public static final class Break extends StmtNode {
+    @Override
+    public Object execute(Environment environment) {
+      return BREAK;
+    }
+  }
+
+  public static final class Continue extends StmtNode {
+    @Override
+    public Object execute(Environment environment) {
+      return CONTINUE;
+    }
+  }
+
+  public static final class Return extends StmtNode {
+    private ExprNode value;
+
+    Return(ExprNode value) {
+      this.value = adopt(value);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      if (value == null) return null;
+      return value.execute(environment);
+    }
+  }
+
+  public static final class Throw extends StmtNode {
+    private ExprNode value;
+    private final Token token;
+
+    Throw(ExprNode value, Token token) {
+      this.value = adopt(value);
+      this.token = token;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      throw new TException(token, value.execute(environment));
+    }
+  }
+
+  public static final class Try extends StmtNode {
+    private final int tryFrameSize;
+    private StmtNode[] tryStatements;
+    private final int catchFrameSize;
+    private StmtNode[] catchStatements;
+
+    Try(int tryFrameSize, StmtNode[] tryStatements, int catchFrameSize, StmtNode[] catchStatements) {
+      this.tryFrameSize = tryFrameSize;
+      this.tryStatements = adopt(tryStatements);
+      this.catchFrameSize = catchFrameSize;
+      this.catchStatements = adopt(catchStatements);
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Object caught;
+      try {
+        return executeAll(tryStatements, new Environment(environment, tryFrameSize));
+      } catch (RuntimeError e) {
+        caught = new TException(e);
+      } catch (TException e) {
+        caught = e.getValue();
+      }
+
+      Environment scope = new Environment(environment, catchFrameSize);
+      scope.define(0, caught);
+      return executeAll(catchStatements, scope);
+    }
+  }
+
+  public static final class Import extends StmtNode {
+    private final ErrorReporter reporter;
+    private final Environment globals;
+    private StmtNode[] statements;
+    private final List<String> locals;
+    private final Token name;
+
+    Import(ErrorReporter reporter, Environment globals, StmtNode[] statements, List<String> locals, Token name) {
+      this.reporter = reporter;
+      this.globals = globals;
+      this.statements = adopt(statements);
+      this.locals = locals;
+      this.name = name;
+    }
+
+    @Override
+    public Object execute(Environment environment) {
+      Environment module = new Environment(null, locals.size());
+      try {
+        executeAll(statements, module);
+      } catch (Exception e) {
+        reporter.error(e.getMessage());
+        throw new RuntimeError(name, "Error while importing file.");
+      }
+
+      for (int i = 0; i < locals.size(); i++) {
+        globals.define(locals.get(i), module.getAt(0, i));
+      }
+
+      return NORMAL;
+    }
+  }
+}
@@ -0,0 +1,413 @@
+package com.lang.elox.core.optimizing;
+
+import com.lang.elox.core.interpreting.Operations;
+import com.lang.elox.core.scanning.TokenType;
+import com.lang.elox.errors.RuntimeError;
+import com.lang.elox.representation.interfaces.ExprVisitor;
+import com.lang.elox.representation.interfaces.StmtVisitor;
+import com.lang.elox.representation.parsetime.Expr;
+import com.lang.elox.representation.parsetime.Stmt;
+import com.lang.elox.representation.runtime.instances.TString;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Rewrites the resolved tree before it is run: operators on constant operands
+// are folded, branches and loops behind a constant condition are dropped and
+// 'and'/'or' with a constant left operand are replaced by the operand that
+// decides them. A node is only rebuilt when one of its
+// children changed, the rest keep the slots the resolver assigned to them.
+// Statement lists are rewritten in place.
+
+public final class Optimizer implements ExprVisitor<Expr>, StmtVisitor<Stmt> {
+  private int nodes = 0;
+  private int removed = 0;
+
+  // nodes removed by all optimize calls so far
+  public int removed() {
+    return removed;
+  }
+
+  public void optimize(List<Stmt> statements) {
+    // every pass counts the nodes it visits, folding can expose more work
+    // for the next one, so passes repeat until the tree stops shrinking
+    int original = pass(statements);
+    int size = original;
+    int previous;
+    do {
+      previous = size;
+      size = pass(statements);
+    } while (size < previous);
+
+    removed += original - size;
+  }
+
+  private int pass(List<Stmt> statements) {
+    nodes = 0;
+    optimizeAll(statements);
+    return nodes;
+  }
+
+  private void optimizeAll(List<Stmt> statements) {
+    ListIterator<Stmt> iterator = statements.listIterator();
+    while (iterator.hasNext()) {
+      Stmt stmt = optimize(iterator.next());
+      if (stmt == null) {
+        iterator.remove();
+      } else {
+        iterator.set(stmt);
+      }
+    }
+  }
+
+  private void optimizeEach(List<Expr> expressions) {
+    expressions.replaceAll(this::optimize);
+  }
+
+  // returns null when the statement does nothing
+  private Stmt optimize(Stmt stmt) {
+    nodes++;
+    return stmt.accept(this);
+  }
+
+  private Expr optimize(Expr expr) {
+    nodes++;
+    return expr.accept(this);
+  }
+
+  // branches that must stay a statement
+  private Stmt orEmpty(Stmt stmt) {
+    return stmt != null ? stmt : new Stmt.Block(new ArrayList<>());
+  }
+
+  // constants
+
+  private static boolean isConstant(Expr expr) {
+    return expr instanceof Expr.Literal || expr instanceof Expr.StringLiteral;
+  }
+
+  private static Object valueOf(Expr expr) {
+    if (expr instanceof Expr.StringLiteral) return ((Expr.StringLiteral) expr).constant;
+    return ((Expr.Literal) expr).value;
+  }
+
+  // null if the value has no literal form
+  private static Expr literal(Object value) {
+    if (value instanceof TString) return new Expr.StringLiteral(((TString) value).string());
+    if (value == null || value instanceof Integer || value instanceof Double || value instanceof Boolean)
+      return new Expr.Literal(value);
+    return null;
+  }
+
+  // statements
+
+  @Override
+  public Stmt visit(Stmt.Expression stmt) {
+    Expr expression = optimize(stmt.expression);
+    return expression == stmt.expression ? stmt : new Stmt.Expression(expression);
+  }
+
+  @Override
+  public Stmt visit(Stmt.Var stmt) {
+    if (stmt.initializer == null) return stmt;
+    Expr initializer = optimize(stmt.initializer);
+    if (initializer == stmt.initializer) return stmt;
+
+    Stmt.Var var = new Stmt.Var(stmt.name, initializer);
+    var.slot = stmt.slot;
+    var.boxed = stmt.boxed;
+    return var;
+  }
+
+  @Override
+  public Stmt visit(Stmt.Block stmt) {
+    optimizeAll(stmt.statements);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visit(Stmt.If stmt) {
+    Expr condition = optimize(stmt.condition);
+    Stmt thenBranch = optimize(stmt.thenBranch);
+    Stmt elseBranch = stmt.elseBranch != null ? optimize(stmt.elseBranch) : null;
+
+    if (isConstant(condition)) {
+      return Operations.isTruthy(valueOf(condition)) ? thenBranch : elseBranch;
+    }
+
+    if (condition == stmt.condition && thenBranch == stmt.thenBranch && elseBranch == stmt.elseBranch) return stmt;
+    return new Stmt.If(condition, orEmpty(thenBranch), elseBranch);
+  }
+
+  @Override
+  public Stmt visit(Stmt.While stmt) {
+    Expr condition = optimize(stmt.condition);
+    Stmt body = optimize(stmt.body);
+    Expr increment = stmt.increment != null ? optimize(stmt.increment) : null;
+
+    if (isConstant(condition) && !Operations.isTruthy(valueOf(condition))) return null;
+
+    if (condition == stmt.condition && body == stmt.body && increment == stmt.increment) return stmt;
+    return new Stmt.While(stmt.keyword, condition, orEmpty(body), increment);
+  }
+
+  @Override
+  public Stmt visit(Stmt.For stmt) {
+    Stmt initializer = stmt.initializer != null ? optimize(stmt.initializer) : null;
+    Stmt loop = optimize(stmt.loop);
+
+    // a loop that never runs leaves the initializer, in the frame it declares
+    if (loop == null) {
+      if (initializer == null || stmt.frameSize == 0) return initializer;
+      Stmt.Block block = new Stmt.Block(new ArrayList<>(Collections.singletonList(initializer)));
+      block.frameSize = stmt.frameSize;
+      block.boxedSlots = stmt.boxedSlots;
+      return block;
+    }
+
+    if (initializer == stmt.initializer && loop == stmt.loop) return stmt;
+    Stmt.For result = new Stmt.For(stmt.keyword, initializer, (Stmt.While) loop);
+    result.frameSize = stmt.frameSize;
+    result.boxedSlots = stmt.boxedSlots;
+    result.counter = stmt.counter;
+    result.step = stmt.step;
+    return result;
+  }
+
+  @Override
+  public Stmt visit(Stmt.Function stmt) {
+    optimizeAll(stmt.body);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visit(Stmt.Return stmt) {
+    if (stmt.value == null) return stmt;
+    Expr value = optimize(stmt.value);
+    return value == stmt.value ? stmt : new Stmt.Return(stmt.keyword, value);
+  }
+
+  @Override
+  public Stmt visit(Stmt.Break stmt) {
+    return stmt;
+  }
+
+  @Override
+  public Stmt visit(Stmt.Continue stmt) {
+    return stmt;
+  }
+
+  @Override
+  public Stmt visit(Stmt.Class stmt) {
+    for (Stmt.Function method : stmt.methods) {
+      nodes++;
+      optimizeAll(method.body);
+    }
+    return stmt;
+  }
+
+  @Override
+  public Stmt visit(Stmt.Import stmt) {
+    optimizeAll(stmt.statements);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visit(Stmt.Try stmt) {
+    optimizeAll(stmt.tryStmt);
+    optimizeAll(stmt.catchStmt);
+    return stmt;
+  }
+
+  @Override
+  public Stmt visit(Stmt.Throw stmt) {
+    Expr expr = optimize(stmt.expr);
+    return expr == stmt.expr ? stmt : new Stmt.Throw(stmt.token, expr);
+  }
+
+  // expressions
+
+  @Override
+  public Expr visit(Expr.Unary expr) {
+    Expr right = optimize(expr.right);
+    if (isConstant(right)) {
+      Expr folded = fold(() -> Operations.unary(expr.operator, valueOf(right)));
+      if (folded != null) return folded;
+    }
+
+    return right == expr.right ? expr : new Expr.Unary(expr.operator, right);
+  }
+
+  @Override
+  public Expr visit(Expr.Binary expr) {
+    Expr left = optimize(expr.left);
+    Expr right = optimize(expr.right);
+    if (isConstant(left) && isConstant(right) && expr.operator.type != TokenType.IS) {
+      Expr folded = fold(() -> Operations.binary(expr.operator, valueOf(left), valueOf(right)));
+      if (folded != null) return folded;
+    }
+
+    return left == expr.left && right == expr.right ? expr : new Expr.Binary(left, expr.operator, right);
+  }
+
+  // operations that fail are left for the engine to report when they run
+  private Expr fold(Supplier<Object> operation) {
+    try {
+      return literal(operation.get());
+    } catch (RuntimeError | ArithmeticException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public Expr visit(Expr.Grouping expr) {
+    return optimize(expr.expr);
+  }
+
+  @Override
+  public Expr visit(Expr.Literal expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visit(Expr.Logical expr) {
+    Expr left = optimize(expr.left);
+    Expr right = optimize(expr.right);
+
+    if (isConstant(left)) {
+      boolean truthy = Operations.isTruthy(valueOf(left));
+      boolean decided = expr.operator.type == TokenType.OR ? truthy : !truthy;
+      return decided ? left : right;
+    }
+
+    if (left == expr.left && right == expr.right) return expr;
+    return new Expr.Logical(left, expr.operator, right);
+  }
+
+  @Override
+  public Expr visit(Expr.StringLiteral expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visit(Expr.Variable expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visit(Expr.Assign expr) {
+    Expr value = optimize(expr.value);
+    if (value == expr.value) return expr;
+
+    Expr.Assign assign = new Expr.Assign(expr.name, value);
+    assign.depth = expr.depth;
+    assign.slot = expr.slot;
+    assign.upvalue = expr.upvalue;
+    assign.boxed = expr.boxed;
+    assign.cell = expr.cell;
+    assign.resolved = expr.resolved;
+    return assign;
+  }
+
+  @Override
+  public Expr visit(Expr.Call expr) {
+    Expr callee = optimize(expr.callee);
+    optimizeEach(expr.arguments);
+    if (callee == expr.callee) return expr;
+
+    Expr.Call call = new Expr.Call(callee, expr.paren, expr.arguments);
+    call.tailCall = expr.tailCall;
+    return call;
+  }
+
+  @Override
+  public Expr visit(Expr.Instance expr) {
+    Expr clazz = optimize(expr.clazz);
+    optimizeEach(expr.arguments);
+    return clazz == expr.clazz ? expr : new Expr.Instance(clazz, expr.paren, expr.arguments);
+  }
+
+  @Override
+  public Expr visit(Expr.Get expr) {
+    Expr object = optimize(expr.object);
+    return object == expr.object ? expr : new Expr.Get(object, expr.name);
+  }
+
+  @Override
+  public Expr visit(Expr.Invoke expr) {
+    Expr object = optimize(expr.object);
+    optimizeEach(expr.arguments);
+    if (object == expr.object) return expr;
+
+    Expr.Invoke invoke = new Expr.Invoke(object, expr.name, expr.paren, expr.arguments);
+    invoke.tailCall = expr.tailCall;
+    return invoke;
+  }
+
+  @Override
+  public Expr visit(Expr.Set expr) {
+    Expr object = optimize(expr.object);
+    Expr value = optimize(expr.value);
+    if (object == expr.object && value == expr.value) return expr;
+    return new Expr.Set(object, expr.name, value);
+  }
+
+  @Override
+  public Expr visit(Expr.Super expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visit(Expr.This expr) {
+    return expr;
+  }
+
+  @Override
+  public Expr visit(Expr.ListLiteral expr) {
+    optimizeEach(expr.elements);
+    return expr;
+  }
+
+  @Override
+  public Expr visit(Expr.DictLiteral expr) {
+    List<Map.Entry<Expr, Expr>> entries = new ArrayList<>(expr.map.entrySet());
+    expr.map.clear();
+    for (Map.Entry<Expr, Expr> entry : entries) {
+      Expr key = optimize(entry.getKey());
+      expr.map.put(key, optimize(entry.getValue()));
+    }
+    return expr;
+  }
+
+  @Override
+  public Expr visit(Expr.IndexSet expr) {
+    Expr object = optimize(expr.object);
+    Expr index = optimize(expr.index);
+    Expr value = optimize(expr.value);
+    if (object == expr.object && index == expr.index && value == expr.value) return expr;
+    return new Expr.IndexSet(object, index, value, expr.token);
+  }
+
+  @Override
+  public Expr visit(Expr.IndexGet expr) {
+    Expr object = optimize(expr.object);
+    Expr index = optimize(expr.index);
+    if (object == expr.object && index == expr.index) return expr;
+    return new Expr.IndexGet(object, index, expr.token);
+  }
+
+  @Override
+  public Expr visit(Expr.Lambda expr) {
+    optimizeAll(expr.body);
+    return expr;
+  }
+
+  @Override
+  public Expr visit(Expr.TypeLiteral expr) {
+    return expr;
+  }
+}
@@ -158,6 +158,8 @@ public final class Parser {
     if (match(THROW)) return throwStatement();
     if (match(TRY)) return tryStatement();
     if (match(RETURN)) return returnStatement();
+    if (match(BREAK)) return breakStatement();
+    if (match(CONTINUE)) return continueStatement();
     if (match(IF)) return ifStatement();
     if (match(FOR)) return forStatement();
     if (match(WHILE)) return whileStatement();
@@ -197,7 +199,20 @@ public final class Parser {
     return new Stmt.Return(keyword, value);
   }
 
+  private Stmt breakStatement() {
+    Token keyword = previous();
+    consume(SEMICOLON, "Expected ';' after 'break'.");
+    return new Stmt.Break(keyword);
+  }
+
+  private Stmt continueStatement() {
+    Token keyword = previous();
+    consume(SEMICOLON, "Expected ';' after 'continue'.");
+    return new Stmt.Continue(keyword);
+  }
+
   private Stmt forStatement() {
+    Token keyword = previous();
     consume(LEFT_PAREN, "Expected '(' after for.");
 
     Stmt initializer;
@@ -222,26 +237,17 @@ public final class Parser {
     consume(RIGHT_PAREN, "Expected ')' after for loop.");
     Stmt body = statement();
 
-    if (increment != null) {
-      body = new Stmt.Block(Arrays.asList(body, new Stmt.Expression(increment)));
-    }
-
     if (condition == null) condition = new Expr.Literal(true);
-    body = new Stmt.While(condition, body);
-
-    if (initializer != null) {
-      body = new Stmt.Block(Arrays.asList(initializer, body));
-    }
-
-    return body;
+    return new Stmt.For(keyword, initializer, new Stmt.While(keyword, condition, body, increment));
   }
 
   private Stmt whileStatement() {
+    Token keyword = previous();
     consume(LEFT_PAREN, "Expected '(' after 'while'.");
     Expr condition = expression();
     consume(RIGHT_PAREN, "Expected ')' after 'while'.");
     Stmt body = statement();
-    return new Stmt.While(condition, body);
+    return new Stmt.While(keyword, condition, body, null);
   }
 
   private Stmt ifStatement() {
@@ -715,6 +721,10 @@ public final class Parser {
     }
 
     Token paren = consume(RIGHT_PAREN, "Expect ')' after arguments.");
+    if (callee instanceof Expr.Get) {
+      Expr.Get get = (Expr.Get) callee;
+      return new Expr.Invoke(get.object, get.name, paren, arguments);
+    }
     return new Expr.Call(callee, paren, arguments);
   }
 
@@ -775,6 +785,8 @@ public final class Parser {
         case IF:
         case WHILE:
         case RETURN:
+        case BREAK:
+        case CONTINUE:
         case IMPORT:
         case TRY:
         case THROW:
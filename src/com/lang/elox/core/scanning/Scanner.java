@@ -45,6 +45,8 @@ public final class Scanner {
     keywords.put("this", THIS);
     keywords.put("var", VAR);
     keywords.put("return", RETURN);
+    keywords.put("break", BREAK);
+    keywords.put("continue", CONTINUE);
     keywords.put("try", TRY);
     keywords.put("catch", CATCH);
     keywords.put("throw", THROW);
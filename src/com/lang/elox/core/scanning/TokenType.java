@@ -81,6 +81,8 @@ public enum TokenType {
   THIS,
   VAR,
   RETURN,
+  BREAK,
+  CONTINUE,
   TRY,
   CATCH,
   THROW,
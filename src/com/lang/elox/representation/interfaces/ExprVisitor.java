@@ -12,6 +12,7 @@ public interface ExprVisitor<T> {
   T visit(Variable expr);
   T visit(Assign expr);
   T visit(Call expr);
+  T visit(Invoke expr);
   T visit(Instance expr);
   T visit(Get expr);
   T visit(Set expr);
@@ -5,9 +5,33 @@ import com.lang.elox.core.scanning.Token;
 
 import java.util.List;
 
+// Callers check the arity before calling. The fixed-arity variants let call
+// sites with few arguments skip building an array, callables that can take
+// the arguments directly override them.
+
 public interface ICallable {
   int arity();
-  Object call(Interpreter interpreter, List<Object> arguments);
+  Object call(Interpreter interpreter, Object... arguments);
+
+  default Object call(Interpreter interpreter, List<Object> arguments) {
+    return call(interpreter, arguments.toArray());
+  }
+
+  default Object call0(Interpreter interpreter) {
+    return call(interpreter, new Object[0]);
+  }
+
+  default Object call1(Interpreter interpreter, Object first) {
+    return call(interpreter, new Object[] {first});
+  }
+
+  default Object call2(Interpreter interpreter, Object first, Object second) {
+    return call(interpreter, new Object[] {first, second});
+  }
+
+  default Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+    return call(interpreter, new Object[] {first, second, third});
+  }
 
   static <T> ICallable build(INativeCallable<T> method, T object, Token name) {
     return new ICallable() {
@@ -17,7 +41,7 @@ public interface ICallable {
       }
 
       @Override
-      public Object call(Interpreter interpreter, List<Object> arguments) {
+      public Object call(Interpreter interpreter, Object... arguments) {
         return method.call(interpreter, object, name, arguments);
       }
 
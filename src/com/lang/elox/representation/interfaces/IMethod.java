@@ -0,0 +1,12 @@
+package com.lang.elox.representation.interfaces;
+
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.representation.runtime.instances.TInstance;
+
+
+public interface IMethod extends ICallable {
+  IMethod bind(TInstance instance);
+
+  // calls the method with instance as 'this', without binding it first
+  Object invoke(Interpreter interpreter, TInstance instance, Object[] arguments);
+}
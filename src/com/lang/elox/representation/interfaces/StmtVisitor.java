@@ -9,8 +9,11 @@ public interface StmtVisitor<T> {
   T visit(Block stmt);
   T visit(If stmt);
   T visit(While stmt);
+  T visit(For stmt);
   T visit(Function stmt);
   T visit(Stmt.Return stmt);
+  T visit(Break stmt);
+  T visit(Continue stmt);
   T visit(Stmt.Class stmt);
   T visit(Import stmt);
   T visit(Try stmt);
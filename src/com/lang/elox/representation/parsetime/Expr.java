@@ -1,6 +1,11 @@
 package com.lang.elox.representation.parsetime;
 
+import com.lang.elox.core.Environment;
+import com.lang.elox.core.interpreting.InlineCache;
+import com.lang.elox.core.jit.CompiledCode;
 import com.lang.elox.representation.interfaces.ExprVisitor;
+import com.lang.elox.representation.runtime.instances.TLambda;
+import com.lang.elox.representation.runtime.instances.TString;
 import com.lang.elox.core.scanning.Token;
 
 import java.util.List;
@@ -8,14 +13,45 @@ import java.util.Map;
 
 // Data hiding is not main here
 
-public abstract class Expr {
+public abstract sealed class Expr {
+  // node kinds, the interpreter switches on them where it only handles some
+  // of the expressions, as in evaluateNumber
+  public static final int UNARY = 0;
+  public static final int BINARY = 1;
+  public static final int GROUPING = 2;
+  public static final int LOGICAL = 3;
+  public static final int LITERAL = 4;
+  public static final int STRING_LITERAL = 5;
+  public static final int VARIABLE = 6;
+  public static final int ASSIGN = 7;
+  public static final int CALL = 8;
+  public static final int INVOKE = 9;
+  public static final int INSTANCE = 10;
+  public static final int GET = 11;
+  public static final int SET = 12;
+  public static final int THIS = 13;
+  public static final int LIST_LITERAL = 14;
+  public static final int INDEX_GET = 15;
+  public static final int INDEX_SET = 16;
+  public static final int DICT_LITERAL = 17;
+  public static final int TYPE_LITERAL = 18;
+  public static final int LAMBDA = 19;
+  public static final int SUPER = 20;
+
+  public final int kind;
+
+  private Expr(int kind) {
+    this.kind = kind;
+  }
+
   public abstract <T> T accept(ExprVisitor<T> visitor);
 
-  public static class Unary extends Expr {
+  public static final class Unary extends Expr {
     public final Token operator;
     public final Expr right;
 
     public Unary(Token operator, Expr right) {
+      super(UNARY);
       this.operator = operator;
       this.right = right;
     }
@@ -26,12 +62,13 @@ public abstract class Expr {
     }
   }
 
-  public static class Binary extends Expr {
+  public static final class Binary extends Expr {
     public final Expr left;
     public final Token operator;
     public final Expr right;
 
     public Binary(Expr left, Token operator, Expr right) {
+      super(BINARY);
       this.left = left;
       this.operator = operator;
       this.right = right;
@@ -43,10 +80,11 @@ public abstract class Expr {
     }
   }
 
-  public static class Grouping extends Expr {
+  public static final class Grouping extends Expr {
     public final Expr expr;
 
     public Grouping(Expr expr) {
+      super(GROUPING);
       this.expr = expr;
     }
 
@@ -56,12 +94,13 @@ public abstract class Expr {
     }
   }
 
-  public static class Logical extends Expr {
+  public static final class Logical extends Expr {
     public final Expr left;
     public final Token operator;
     public final Expr right;
 
     public Logical(Expr left, Token operator, Expr right) {
+      super(LOGICAL);
       this.left = left;
       this.operator = operator;
       this.right = right;
@@ -73,10 +112,11 @@ public abstract class Expr {
     }
   }
 
-  public static class Literal extends Expr {
+  public static final class Literal extends Expr {
     public final Object value;
 
     public Literal(Object value) {
+      super(LITERAL);
       this.value = value;
     }
 
@@ -86,11 +126,15 @@ public abstract class Expr {
     }
   }
 
-  public static class StringLiteral extends Expr {
+  public static final class StringLiteral extends Expr {
     public final String value;
+    // strings are immutable, every evaluation returns this object
+    public final TString constant;
 
     public StringLiteral(String value) {
+      super(STRING_LITERAL);
       this.value = value;
+      this.constant = new TString(value);
     }
 
     @Override
@@ -99,10 +143,20 @@ public abstract class Expr {
     }
   }
 
-  public static class Variable extends Expr {
+  public static final class Variable extends Expr {
     public final Token name;
+    public int depth = -1;
+    public int slot = -1;
+    // index among the upvalues of the enclosing function, -1 for its own
+    // locals; the tree-walking interpreter reads captured variables there
+    public int upvalue = -1;
+    public boolean boxed;
+    public Environment.Cell cell;
+    // set by the resolver, a depth of -1 then means a global
+    public boolean resolved = false;
 
     public Variable(Token name) {
+      super(VARIABLE);
       this.name = name;
     }
 
@@ -112,11 +166,21 @@ public abstract class Expr {
     }
   }
 
-  public static class Assign extends Expr {
+  public static final class Assign extends Expr {
     public final Token name;
     public final Expr value;
+    public int depth = -1;
+    public int slot = -1;
+    // index among the upvalues of the enclosing function, -1 for its own
+    // locals; the tree-walking interpreter reads captured variables there
+    public int upvalue = -1;
+    public boolean boxed;
+    public Environment.Cell cell;
+    // set by the resolver, a depth of -1 then means a global
+    public boolean resolved = false;
 
     public Assign(Token name, Expr value) {
+      super(ASSIGN);
       this.name = name;
       this.value = value;
     }
@@ -127,12 +191,15 @@ public abstract class Expr {
     }
   }
 
-  public static class Call extends Expr {
+  public static final class Call extends Expr {
     public final Expr callee;
     public final Token paren;
     public final List<Expr> arguments;
+    // the value of a 'return' outside any try block
+    public boolean tailCall = false;
 
     public Call(Expr callee, Token paren, List<Expr> arguments) {
+      super(CALL);
       this.callee = callee;
       this.paren = paren;
       this.arguments = arguments;
@@ -144,12 +211,36 @@ public abstract class Expr {
     }
   }
 
-  public static class Instance extends Expr {
+  // call of a method on an object, 'object.name(arguments)'
+  public static final class Invoke extends Expr {
+    public final Expr object;
+    public final Token name;
+    public final Token paren;
+    public final List<Expr> arguments;
+    public InlineCache.Property cache;
+    public boolean tailCall = false;
+
+    public Invoke(Expr object, Token name, Token paren, List<Expr> arguments) {
+      super(INVOKE);
+      this.object = object;
+      this.name = name;
+      this.paren = paren;
+      this.arguments = arguments;
+    }
+
+    @Override
+    public <T> T accept(ExprVisitor<T> visitor) {
+      return visitor.visit(this);
+    }
+  }
+
+  public static final class Instance extends Expr {
     public final Expr clazz;
     public final Token paren;
     public final List<Expr> arguments;
 
     public Instance(Expr clazz, Token paren, List<Expr> arguments) {
+      super(INSTANCE);
       this.clazz = clazz;
       this.paren = paren;
       this.arguments = arguments;
@@ -161,11 +252,13 @@ public abstract class Expr {
     }
   }
 
-  public static class Get extends Expr {
+  public static final class Get extends Expr {
     public final Expr object;
     public final Token name;
+    public InlineCache.Property cache;
 
     public Get(Expr object, Token name) {
+      super(GET);
       this.object = object;
       this.name = name;
     }
@@ -176,12 +269,13 @@ public abstract class Expr {
     }
   }
 
-  public static class Set extends Expr {
+  public static final class Set extends Expr {
     public final Expr object;
     public final Token name;
     public final Expr value;
 
     public Set(Expr object, Token name, Expr value) {
+      super(SET);
       this.object = object;
       this.name = name;
       this.value = value;
@@ -193,10 +287,14 @@ public abstract class Expr {
     }
   }
 
-  public static class This extends Expr {
+  public static final class This extends Expr {
     public final Token keyword;
+    public int depth = -1;
+    public int slot = -1;
+    public int upvalue = -1;
 
     public This(Token keyword) {
+      super(THIS);
       this.keyword = keyword;
     }
 
@@ -206,11 +304,12 @@ public abstract class Expr {
     }
   }
 
-  public static class ListLiteral extends Expr {
+  public static final class ListLiteral extends Expr {
     public final Token paren;
     public final List<Expr> elements;
 
     public ListLiteral(Token paren, List<Expr> elements) {
+      super(LIST_LITERAL);
       this.paren = paren;
       this.elements = elements;
     }
@@ -221,12 +320,13 @@ public abstract class Expr {
     }
   }
 
-  public static class IndexGet extends Expr {
+  public static final class IndexGet extends Expr {
     public final Expr object;
     public final Expr index;
     public final Token token;
 
     public IndexGet(Expr object, Expr index, Token token) {
+      super(INDEX_GET);
       this.object = object;
       this.index = index;
       this.token = token;
@@ -238,13 +338,14 @@ public abstract class Expr {
     }
   }
 
-  public static class IndexSet extends Expr {
+  public static final class IndexSet extends Expr {
     public final Expr object;
     public final Expr index;
     public final Expr value;
     public final Token token;
 
     public IndexSet(Expr object, Expr index, Expr value, Token token) {
+      super(INDEX_SET);
       this.object = object;
       this.index = index;
       this.value = value;
@@ -257,11 +358,12 @@ public abstract class Expr {
     }
   }
 
-  public static class DictLiteral extends Expr {
+  public static final class DictLiteral extends Expr {
     public final Token paren;
     public final Map<Expr, Expr> map;
 
     public DictLiteral(Token paren, Map<Expr, Expr> map) {
+      super(DICT_LITERAL);
       this.paren = paren;
       this.map = map;
     }
@@ -272,10 +374,11 @@ public abstract class Expr {
     }
   }
 
-  public static class TypeLiteral extends Expr {
+  public static final class TypeLiteral extends Expr {
     public final Token name;
 
     public TypeLiteral(Token name) {
+      super(TYPE_LITERAL);
       this.name = name;
     }
 
@@ -285,12 +388,22 @@ public abstract class Expr {
     }
   }
 
-  public static class Lambda extends Expr {
+  public static final class Lambda extends Expr {
     public final Token name;
     public final List<Token> params;
     public final List<Stmt> body;
+    public int frameSize;
+    public int[] boxedSlots;
+    // see Stmt.Function
+    public int[] captureDepths;
+    public int[] captureSlots;
+    // the lambda made here if it captures nothing, see TLambda.of
+    public TLambda instance;
+    public int invocations;
+    public CompiledCode compiled;
 
     public Lambda(Token name, List<Token> params, List<Stmt> body) {
+      super(LAMBDA);
       this.name = name;
       this.params = params;
       this.body = body;
@@ -302,11 +415,18 @@ public abstract class Expr {
     }
   }
 
-  public static class Super extends Expr {
+  public static final class Super extends Expr {
     public final Token keyword;
     public final Token method;
+    public int depth = -1;
+    // slot of 'this' in the method frame inside the 'super' scope
+    public int slot = -1;
+    // upvalues holding the superclass and, inside a closure, the receiver
+    public int upvalue = -1;
+    public int receiverUpvalue = -1;
 
     public Super(Token keyword, Token method) {
+      super(SUPER);
       this.keyword = keyword;
       this.method = method;
     }
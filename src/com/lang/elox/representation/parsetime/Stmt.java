@@ -1,17 +1,41 @@
 package com.lang.elox.representation.parsetime;
 
 import com.lang.elox.representation.interfaces.StmtVisitor;
+import com.lang.elox.core.jit.CompiledCode;
 import com.lang.elox.core.scanning.Token;
 
 import java.util.List;
 
-public abstract class Stmt {
+public abstract sealed class Stmt {
+  // node kinds, the interpreter switches on them instead of visiting
+  public static final int EXPRESSION = 0;
+  public static final int VAR = 1;
+  public static final int BLOCK = 2;
+  public static final int IF = 3;
+  public static final int WHILE = 4;
+  public static final int FOR = 5;
+  public static final int FUNCTION = 6;
+  public static final int RETURN = 7;
+  public static final int BREAK = 8;
+  public static final int CONTINUE = 9;
+  public static final int CLASS = 10;
+  public static final int IMPORT = 11;
+  public static final int TRY = 12;
+  public static final int THROW = 13;
+
+  public final int kind;
+
+  private Stmt(int kind) {
+    this.kind = kind;
+  }
+
   public abstract <T> T accept(StmtVisitor<T> visitor);
 
-  public static class Expression extends Stmt {
+  public static final class Expression extends Stmt {
     public final Expr expression;
 
     public Expression(Expr expression) {
+      super(EXPRESSION);
       this.expression = expression;
     }
 
@@ -21,11 +45,15 @@ public abstract class Stmt {
     }
   }
 
-  public static class Var extends Stmt {
+  public static final class Var extends Stmt {
     public final Token name;
     public final Expr initializer;
+    public int slot = -1;
+    // set when closures share the variable through a cell
+    public boolean boxed;
 
     public Var(Token name, Expr initializer) {
+      super(VAR);
       this.name = name;
       this.initializer = initializer;
     }
@@ -36,10 +64,15 @@ public abstract class Stmt {
     }
   }
 
-  public static class Block extends Stmt {
+  public static final class Block extends Stmt {
     public final List<Stmt> statements;
+    // 0 when the block declares nothing and runs in the enclosing frame
+    public int frameSize;
+    // slots of the frame kept in cells, null if none
+    public int[] boxedSlots;
 
     public Block(List<Stmt> statements) {
+      super(BLOCK);
       this.statements = statements;
     }
 
@@ -49,12 +82,13 @@ public abstract class Stmt {
     }
   }
 
-  public static class If extends Stmt {
+  public static final class If extends Stmt {
     public final Expr condition;
     public final Stmt thenBranch;
     public final Stmt elseBranch;
 
     public If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
+      super(IF);
       this.condition = condition;
       this.thenBranch = thenBranch;
       this.elseBranch = elseBranch;
@@ -66,13 +100,20 @@ public abstract class Stmt {
     }
   }
 
-  public static class While extends Stmt {
+  public static final class While extends Stmt {
+    public final Token keyword;
     public final Expr condition;
     public final Stmt body;
+    public final Expr increment;
+    public int backEdges;
+    public CompiledCode compiled;
 
-    public While(Expr condition, Stmt body) {
+    public While(Token keyword, Expr condition, Stmt body, Expr increment) {
+      super(WHILE);
+      this.keyword = keyword;
       this.condition = condition;
       this.body = body;
+      this.increment = increment;
     }
 
     @Override
@@ -81,12 +122,49 @@ public abstract class Stmt {
     }
   }
 
-  public static class Function extends Stmt {
+  // The variable declared by the initializer lives in one frame for the
+  // whole loop, frameSize is 0 when the initializer declares nothing.
+  public static final class For extends Stmt {
+    public final Token keyword;
+    public final Stmt initializer;
+    public final While loop;
+    public int frameSize;
+    public int[] boxedSlots;
+    // slot of an int counter the increment steps by a constant, -1 if none
+    public int counter = -1;
+    public int step;
+
+    public For(Token keyword, Stmt initializer, While loop) {
+      super(FOR);
+      this.keyword = keyword;
+      this.initializer = initializer;
+      this.loop = loop;
+    }
+
+    @Override
+    public <T> T accept(StmtVisitor<T> visitor) {
+      return visitor.visit(this);
+    }
+  }
+
+  public static final class Function extends Stmt {
     public final Token name;
     public final List<Token> params;
     public final List<Stmt> body;
+    public int slot = -1;
+    public boolean boxed;
+    public int frameSize;
+    public int[] boxedSlots;
+    // Where each upvalue is found when the closure is created: a slot
+    // captureDepths[i] frames out, or for -1 an upvalue of the enclosing
+    // function. Null when the function captures nothing.
+    public int[] captureDepths;
+    public int[] captureSlots;
+    public int invocations;
+    public CompiledCode compiled;
 
     public Function(Token name, List<Token> params, List<Stmt> body) {
+      super(FUNCTION);
       this.name = name;
       this.params = params;
       this.body = body;
@@ -98,11 +176,12 @@ public abstract class Stmt {
     }
   }
 
-  public static class Return extends Stmt {
+  public static final class Return extends Stmt {
     public final Token keyword;
     public final Expr value;
 
     public Return(Token keyword, Expr value) {
+      super(RETURN);
       this.keyword = keyword;
       this.value = value;
     }
@@ -113,12 +192,43 @@ public abstract class Stmt {
     }
   }
 
-  public static class Class extends Stmt {
+  public static final class Break extends Stmt {
+    public final Token keyword;
+
+    public Break(Token keyword) {
+      super(BREAK);
+      this.keyword = keyword;
+    }
+
+    @Override
+    public <T> T accept(StmtVisitor<T> visitor) {
+      return visitor.visit(this);
+    }
+  }
+
+  public static final class Continue extends Stmt {
+    public final Token keyword;
+
+    public Continue(Token keyword) {
+      super(CONTINUE);
+      this.keyword = keyword;
+    }
+
+    @Override
+    public <T> T accept(StmtVisitor<T> visitor) {
+      return visitor.visit(this);
+    }
+  }
+
+  public static final class Class extends Stmt {
     public final Token name;
     public Expr.Variable superclass;
     public final List<Stmt.Function> methods;
+    public int slot = -1;
+    public boolean boxed;
 
     public Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods) {
+      super(CLASS);
       this.name = name;
       this.superclass = superclass;
       this.methods = methods;
@@ -130,11 +240,14 @@ public abstract class Stmt {
     }
   }
 
-  public static class Import extends Stmt {
+  public static final class Import extends Stmt {
     public final Token name;
     public final List<Stmt> statements;
+    public List<String> locals;
+    public int[] boxedSlots;
 
     public Import(Token name, List<Stmt> statements) {
+      super(IMPORT);
       this.name = name;
       this.statements = statements;
     }
@@ -145,12 +258,17 @@ public abstract class Stmt {
     }
   }
 
-  public static class Try extends Stmt {
+  public static final class Try extends Stmt {
     public final Token parameter;
     public final List<Stmt> tryStmt;
     public final List<Stmt> catchStmt;
+    public int tryFrameSize;
+    public int catchFrameSize;
+    public int[] tryBoxedSlots;
+    public int[] catchBoxedSlots;
 
     public Try(Token parameter, List<Stmt> tryStmt, List<Stmt> catchStmt) {
+      super(TRY);
       this.parameter = parameter;
       this.tryStmt = tryStmt;
       this.catchStmt = catchStmt;
@@ -162,11 +280,12 @@ public abstract class Stmt {
     }
   }
 
-  public static class Throw extends Stmt {
+  public static final class Throw extends Stmt {
     public final Token token;
     public final Expr expr;
 
     public Throw(Token token, Expr expr) {
+      super(THROW);
       this.token = token;
       this.expr = expr;
     }
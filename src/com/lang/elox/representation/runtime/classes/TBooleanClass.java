@@ -10,6 +10,11 @@ public class TBooleanClass extends Type {
     throw new RuntimeError(name, "Undefined method '" + name.lexeme + "'.");
   }
 
+  @Override
+  public int tag() {
+    return Types.BOOLEAN;
+  }
+
   @Override
   public String toString() {
     return "[Type: Boolean]";
@@ -8,7 +8,6 @@ import com.lang.elox.core.scanning.Token;
 import com.lang.elox.representation.runtime.instances.TDict;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class TDictClass extends Type {
@@ -24,7 +23,7 @@ public class TDictClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TDict object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TDict object, Token token, Object[] arguments) {
         return object.size();
       }
     });
@@ -36,7 +35,7 @@ public class TDictClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TDict object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TDict object, Token token, Object[] arguments) {
         return object.getMap().isEmpty();
       }
     });
@@ -48,7 +47,7 @@ public class TDictClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TDict object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TDict object, Token token, Object[] arguments) {
         object.getMap().clear();
         return null;
       }
@@ -66,11 +65,21 @@ public class TDictClass extends Type {
   }
 
   public static ICallable findMethod(TDict dict, Token name) {
-    INativeCallable<TDict> method = methods.get(name.lexeme);
+    INativeCallable<TDict> method = lookupMethod(name.lexeme);
     if (method == null) return null;
     return ICallable.build(method, dict, name);
   }
 
+  // the shared entry, for callers passing the receiver themselves
+  public static INativeCallable<TDict> lookupMethod(String name) {
+    return methods.get(name);
+  }
+
+  @Override
+  public int tag() {
+    return Types.DICT;
+  }
+
   @Override
   public String toString() {
     return "[Type: Dict]";
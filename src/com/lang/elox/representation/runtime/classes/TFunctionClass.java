@@ -9,6 +9,11 @@ public class TFunctionClass extends Type {
     throw new RuntimeError(name, "Undefined method '" + name.lexeme + "'.");
   }
 
+  @Override
+  public int tag() {
+    return Types.FUNCTION;
+  }
+
   @Override
   public String toString() {
     return "[Type: Function]";
@@ -8,7 +8,6 @@ import com.lang.elox.core.scanning.Token;
 import com.lang.elox.representation.runtime.instances.TString;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 public class TIntClass extends Type {
@@ -22,12 +21,12 @@ public class TIntClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
-        if (!(arguments.get(0) instanceof TString))
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
+        if (!(arguments[0] instanceof TString))
           throw new RuntimeError(token, "Expected string argument.");
         Integer x;
         try {
-          x = Integer.parseInt(((TString) arguments.get(0)).string());
+          x = Integer.parseInt(((TString) arguments[0]).string());
         } catch (NumberFormatException e) {
           throw new RuntimeError(token, "Invalid number format.");
         }
@@ -43,6 +42,11 @@ public class TIntClass extends Type {
     throw new RuntimeError(name, "Undefined method '" + name.lexeme + "'.");
   }
 
+  @Override
+  public int tag() {
+    return Types.INT;
+  }
+
   @Override
   public String toString() {
     return "[Type: Int]";
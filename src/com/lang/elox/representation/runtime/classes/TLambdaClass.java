@@ -9,6 +9,11 @@ public class TLambdaClass extends Type {
     throw new RuntimeError(name, "Undefined method '" + name.lexeme + "'.");
   }
 
+  @Override
+  public int tag() {
+    return Types.LAMBDA;
+  }
+
   @Override
   public String toString() {
     return "[Type: Lambda]";
@@ -10,7 +10,6 @@ import com.lang.elox.representation.runtime.instances.TLambda;
 import com.lang.elox.representation.runtime.instances.TList;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +26,7 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
         return object.size();
       }
     });
@@ -39,7 +38,7 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
         return object.getElements().isEmpty();
       }
     });
@@ -51,7 +50,7 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
         object.getElements().clear();
         return null;
       }
@@ -64,13 +63,13 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
-        validateCallable(arguments.get(0), token);
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
+        validateCallable(arguments[0], token);
 
-        ICallable function = (ICallable) arguments.get(0);
+        ICallable function = (ICallable) arguments[0];
         validateArity(function, 1, token);
         for (Object element : object.getElements()) {
-          function.call(interpreter, Arrays.asList(element));
+          function.call1(interpreter, element);
         }
 
         return null;
@@ -84,14 +83,14 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
-        validateCallable(arguments.get(0), token);
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
+        validateCallable(arguments[0], token);
 
-        ICallable function = (ICallable) arguments.get(0);
+        ICallable function = (ICallable) arguments[0];
         validateArity(function, 1, token);
         List<Object> elements = new ArrayList<>();
         for (Object element : object.getElements()) {
-          elements.add(function.call(interpreter, Arrays.asList(element)));
+          elements.add(function.call1(interpreter, element));
         }
 
         return new TList(elements);
@@ -105,9 +104,9 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
-        if (arguments.get(0) == null) throw new RuntimeError(token, "Null keys are forbidden.");
-        object.getElements().add(arguments.get(0));
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
+        if (arguments[0] == null) throw new RuntimeError(token, "Null keys are forbidden.");
+        object.getElements().add(arguments[0]);
         return null;
       }
     });
@@ -119,7 +118,7 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
         if (object.getElements().isEmpty()) throw new RuntimeError(token, "Array is empty.");
         return object.getElements().remove(object.size() - 1);
       }
@@ -132,14 +131,14 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
-        if (arguments.get(1) == null) throw new RuntimeError(token, "Null keys are forbidden.");
-        if (!(arguments.get(0) instanceof Integer))
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
+        if (arguments[1] == null) throw new RuntimeError(token, "Null keys are forbidden.");
+        if (!(arguments[0] instanceof Integer))
           throw new RuntimeError(token, "Integer index expected.");
-        Integer index = (Integer) arguments.get(0);
+        Integer index = (Integer) arguments[0];
         if (index < 0 || index >= object.size())
           throw new RuntimeError(token, "Index is out of bounds.");
-        object.getElements().add(index, arguments.get(1));
+        object.getElements().add(index, arguments[1]);
         return null;
       }
     });
@@ -151,10 +150,10 @@ public class TListClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TList object, Token token, List<Object> arguments) {
-        if (!(arguments.get(0) instanceof Integer))
+      public Object call(Interpreter interpreter, TList object, Token token, Object[] arguments) {
+        if (!(arguments[0] instanceof Integer))
           throw new RuntimeError(token, "Integer index expected.");
-        int index = (Integer) arguments.get(0);
+        int index = (Integer) arguments[0];
         if (index < 0 || index >= object.size())
           throw new RuntimeError(token, "Index is out bounds.");
         return object.getElements().remove(index);
@@ -163,11 +162,16 @@ public class TListClass extends Type {
   }
 
   public static ICallable findMethod(TList list, Token name) {
-    INativeCallable<TList> method = methods.get(name.lexeme);
+    INativeCallable<TList> method = lookupMethod(name.lexeme);
     if (method == null) return null;
     return ICallable.build(method, list, name);
   }
 
+  // the shared entry, for callers passing the receiver themselves
+  public static INativeCallable<TList> lookupMethod(String name) {
+    return methods.get(name);
+  }
+
   @Override
   public Object get(Token name) {
     throw new RuntimeError(name, "Undefined method '" + name.lexeme + "'.");
@@ -186,6 +190,11 @@ public class TListClass extends Type {
     }
   }
 
+  @Override
+  public int tag() {
+    return Types.LIST;
+  }
+
   @Override
   public String toString() {
     return "[Type: List]";
@@ -9,6 +9,11 @@ public class TObjectClass extends Type {
     throw new RuntimeError(name, "Undefined method '" + name.lexeme + "'.");
   }
 
+  @Override
+  public int tag() {
+    return Types.OBJECT;
+  }
+
   @Override
   public String toString() {
     return "[Type: Object]";
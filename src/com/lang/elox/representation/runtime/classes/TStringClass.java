@@ -26,7 +26,7 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
         return object.string().length();
       }
     });
@@ -38,9 +38,9 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
-        checkInts(token, arguments.get(0), arguments.get(1));
-        int var1 = (int) arguments.get(0), var2 = (int) arguments.get(1), len = object.string().length();
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
+        checkInts(token, arguments[0], arguments[1]);
+        int var1 = (int) arguments[0], var2 = (int) arguments[1], len = object.string().length();
         if (var1 < 0 || var2 < var1 || var2 > len) throw new RuntimeError(token, "Index is out of range.");
         String s = object.string().substring(var1, var2);
         return new TString(s);
@@ -54,10 +54,10 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
-        if (!(arguments.get(0) instanceof TString) || !(arguments.get(1) instanceof TString))
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
+        if (!(arguments[0] instanceof TString) || !(arguments[1] instanceof TString))
           throw new RuntimeError(token, "Expected string arguments to 'replaceAll'.");
-        String var1 = arguments.get(0).toString(), var2 = arguments.get(1).toString();
+        String var1 = arguments[0].toString(), var2 = arguments[1].toString();
         return new TString(object.string().replaceAll(var1, var2));
       }
     });
@@ -69,10 +69,10 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
-        if (!(arguments.get(0) instanceof TString) || !(arguments.get(1) instanceof TString))
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
+        if (!(arguments[0] instanceof TString) || !(arguments[1] instanceof TString))
           throw new RuntimeError(token, "Expected string arguments to 'replace'.");
-        String var1 = arguments.get(0).toString(), var2 = arguments.get(1).toString();
+        String var1 = arguments[0].toString(), var2 = arguments[1].toString();
         return new TString(object.string().replaceFirst(var1, var2));
       }
     });
@@ -84,7 +84,7 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
         return new TString(new StringBuilder(object.string()).reverse().toString());
       }
     });
@@ -96,9 +96,9 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
-        checkInts(token, arguments.get(0));
-        int var1 = (int) arguments.get(0);
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
+        checkInts(token, arguments[0]);
+        int var1 = (int) arguments[0];
         if (var1 < 0 || var1 >= object.string().length())
           throw new RuntimeError(token, "Char index '" + var1 + "' is out of range.");
         return new TString(object.string().charAt(var1));
@@ -112,11 +112,11 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
-        if (!(arguments.get(0) instanceof TString))
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
+        if (!(arguments[0] instanceof TString))
           throw new RuntimeError(token, "Expected string delimiter.");
 
-        TString delimiter = (TString) arguments.get(0);
+        TString delimiter = (TString) arguments[0];
         return new TList(Arrays.asList(object.string().split(delimiter.string())));
       }
     });
@@ -128,7 +128,7 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
         return object.string().isEmpty();
       }
     });
@@ -141,18 +141,18 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
-        if (!(arguments.get(0) instanceof TString) || !(arguments.get(1) instanceof TList))
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
+        if (!(arguments[0] instanceof TString) || !(arguments[1] instanceof TList))
           throw new RuntimeError(token, "Error: 'join' has signature (string, list[string]).");
         List<String> list = new ArrayList<>();
-        for (Object o : ((TList) arguments.get(1)).getElements()) {
+        for (Object o : ((TList) arguments[1]).getElements()) {
           if (!(o instanceof TString)) {
             throw new RuntimeError(token, "Error: 'join' has signature (string, list[string]).");
           }
           list.add(((TString) o).string());
         }
 
-        return new TString(String.join(((TString) arguments.get(0)).string(), list));
+        return new TString(String.join(((TString) arguments[0]).string(), list));
       }
     });
 
@@ -163,18 +163,23 @@ public class TStringClass extends Type {
       }
 
       @Override
-      public Object call(Interpreter interpreter, TString object, Token token, List<Object> arguments) {
-        return new TString(arguments.get(0).toString());
+      public Object call(Interpreter interpreter, TString object, Token token, Object[] arguments) {
+        return new TString(arguments[0].toString());
       }
     });
   }
 
   public static ICallable findMethod(TString string, Token name) {
-    INativeCallable<TString> method = methods.get(name.lexeme);
+    INativeCallable<TString> method = lookupMethod(name.lexeme);
     if (method == null) return null;
     return ICallable.build(method, string, name);
   }
 
+  // the shared entry, for callers passing the receiver themselves
+  public static INativeCallable<TString> lookupMethod(String name) {
+    return methods.get(name);
+  }
+
   private static void checkInts(Token token, Object... objects) {
     for (Object o : objects) {
       if (!(o instanceof Integer))
@@ -189,6 +194,11 @@ public class TStringClass extends Type {
     throw new RuntimeError(name, "Undefined method '" + name.lexeme + "'.");
   }
 
+  @Override
+  public int tag() {
+    return Types.STRING;
+  }
+
   @Override
   public String toString() {
     return "[Type: String]";
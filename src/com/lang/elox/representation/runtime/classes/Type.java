@@ -4,4 +4,7 @@ import com.lang.elox.core.scanning.Token;
 
 public abstract class Type  {
   public abstract Object get(Token name);
+
+  // one of the tags in Types, shared by the type and its values
+  public abstract int tag();
 }
@@ -0,0 +1,54 @@
+package com.lang.elox.representation.runtime.classes;
+
+// Registry of the built-in types. A type literal always evaluates to the
+// same object, and values are matched against types by comparing the tag
+// of the value with the tag of the type.
+
+public final class Types {
+  public static final int OBJECT = 0;
+  public static final int INT = 1;
+  public static final int DOUBLE = 2;
+  public static final int BOOLEAN = 3;
+  public static final int STRING = 4;
+  public static final int LIST = 5;
+  public static final int DICT = 6;
+  public static final int FUNCTION = 7;
+  public static final int LAMBDA = 8;
+
+  public static final TObjectClass OBJECT_TYPE = new TObjectClass();
+  public static final TIntClass INT_TYPE = new TIntClass();
+  public static final TDoubleClass DOUBLE_TYPE = new TDoubleClass();
+  public static final TBooleanClass BOOLEAN_TYPE = new TBooleanClass();
+  public static final TStringClass STRING_TYPE = new TStringClass();
+  public static final TListClass LIST_TYPE = new TListClass();
+  public static final TDictClass DICT_TYPE = new TDictClass();
+  public static final TFunctionClass FUNCTION_TYPE = new TFunctionClass();
+  public static final TLambdaClass LAMBDA_TYPE = new TLambdaClass();
+
+  private Types() {}
+
+  // null for names that aren't built-in types
+  public static Type named(String name) {
+    switch (name) {
+      case "Object": return OBJECT_TYPE;
+      case "Int": return INT_TYPE;
+      case "Double": return DOUBLE_TYPE;
+      case "Boolean": return BOOLEAN_TYPE;
+      case "String": return STRING_TYPE;
+      case "List": return LIST_TYPE;
+      case "Dict": return DICT_TYPE;
+      case "Function": return FUNCTION_TYPE;
+      case "Lambda": return LAMBDA_TYPE;
+      default: return null;
+    }
+  }
+
+  // returns -1 for null and values of no built-in type
+  public static int tagOf(Object value) {
+    if (value instanceof Integer) return INT;
+    if (value instanceof Double) return DOUBLE;
+    if (value instanceof Boolean) return BOOLEAN;
+    if (value instanceof Type) return ((Type) value).tag();
+    return -1;
+  }
+}
@@ -0,0 +1,61 @@
+package com.lang.elox.representation.runtime.instances;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Field layout shared by instances. Every class has an empty root shape, an
+// instance starts there and follows a transition each time a field is added,
+// so instances whose fields are added in the same order end up sharing one
+// shape and keep their values in an array indexed by its slots.
+
+public final class Shape {
+  private final Shape root;
+  private final String[] names;
+  private final Map<String, Integer> slots;
+  private final Map<String, Shape> transitions = new HashMap<>();
+  // size of the largest shape reached from the root, used to size new instances
+  private int largest = 0;
+
+  Shape() {
+    this.root = this;
+    this.names = new String[0];
+    this.slots = new HashMap<>();
+  }
+
+  private Shape(Shape parent, String name) {
+    this.root = parent.root;
+    this.names = Arrays.copyOf(parent.names, parent.names.length + 1);
+    this.names[parent.names.length] = name;
+    this.slots = new HashMap<>(parent.slots);
+    this.slots.put(name, parent.names.length);
+  }
+
+  // returns -1 if the shape has no such field
+  public int slotOf(String name) {
+    Integer slot = slots.get(name);
+    return slot == null ? -1 : slot;
+  }
+
+  public int size() {
+    return names.length;
+  }
+
+  String nameAt(int slot) {
+    return names[slot];
+  }
+
+  int expectedSize() {
+    return root.largest;
+  }
+
+  Shape with(String name) {
+    Shape next = transitions.get(name);
+    if (next == null) {
+      next = new Shape(this, name);
+      transitions.put(name, next);
+      if (next.size() > root.largest) root.largest = next.size();
+    }
+    return next;
+  }
+}
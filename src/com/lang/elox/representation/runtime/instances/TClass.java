@@ -1,40 +1,51 @@
 package com.lang.elox.representation.runtime.instances;
 
 import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.representation.interfaces.IMethod;
 import com.lang.elox.core.interpreting.Interpreter;
 
-import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 
+// The method table is built when the class is defined and holds the
+// inherited methods too, so finding a method is one lookup however deep the
+// hierarchy is. Only a class's own __init__ constructs its instances.
+
 public final class TClass implements ICallable {
   private final String name;
   private final TClass superclass;
-  private final Map<String, TFunction> methods;
+  private final Map<String, IMethod> methods;
+  private final IMethod initializer;
+  private final Shape shape = new Shape();
 
-  public TClass(String name, TClass superclass, Map<String, TFunction> methods) {
+  public TClass(String name, TClass superclass, Map<String, IMethod> methods) {
     this.name = name;
     this.superclass = superclass;
-    this.methods = methods;
+    this.methods = superclass != null ? inherit(superclass.methods, methods) : methods;
+    this.initializer = methods.get("__init__");
   }
 
-  public TFunction findMethod(TInstance instance, String name) {
-    if (methods.containsKey(name)) {
-      return methods.get(name).bind(instance);
-    }
+  private static Map<String, IMethod> inherit(Map<String, IMethod> inherited, Map<String, IMethod> own) {
+    Map<String, IMethod> table = new HashMap<>(inherited);
+    table.putAll(own);
+    return table;
+  }
 
-    if (superclass != null) {
-      return superclass.findMethod(instance, name);
-    }
+  public IMethod findMethod(TInstance instance, String name) {
+    IMethod method = lookupMethod(name);
+    return method != null ? method.bind(instance) : null;
+  }
 
-    return null;
+  // unbound method, inherited ones included
+  public IMethod lookupMethod(String name) {
+    return methods.get(name);
   }
 
   @Override
-  public Object call(Interpreter interpreter, List<Object> arguments) {
+  public Object call(Interpreter interpreter, Object... arguments) {
     TInstance instance = new TInstance(this);
-    TFunction initializer = methods.get("__init__");
     if (initializer != null) {
-      initializer.bind(instance).call(interpreter, arguments);
+      initializer.invoke(interpreter, instance, arguments);
     }
 
     return instance;
@@ -42,7 +53,6 @@ public final class TClass implements ICallable {
 
   @Override
   public int arity() {
-    TFunction initializer = methods.get("__init__");
     if (initializer == null) return 0;
     return initializer.arity();
   }
@@ -66,6 +76,11 @@ public final class TClass implements ICallable {
     return that.name.equals(this.name);
   }
 
+  // shape of a new instance, before its constructor adds any field
+  public Shape getShape() {
+    return shape;
+  }
+
   public TClass getSuperclass() {
     return superclass;
   }
@@ -1,46 +1,118 @@
 package com.lang.elox.representation.runtime.instances;
 
 import com.lang.elox.core.Environment;
-import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.core.jit.CompiledCode;
+import com.lang.elox.representation.interfaces.IMethod;
+import com.lang.elox.core.interpreting.Completion;
 import com.lang.elox.core.interpreting.Interpreter;
-import com.lang.elox.errors.Return;
+import com.lang.elox.core.interpreting.TailCall;
 import com.lang.elox.representation.parsetime.Stmt;
 import com.lang.elox.representation.runtime.classes.TFunctionClass;
 
-import java.util.List;
-
-public final class TFunction extends TFunctionClass implements ICallable {
+public final class TFunction extends TFunctionClass implements IMethod {
   private final Stmt.Function declaration;
-  private final Environment closure;
+  // the variables it captured, see Environment.capture
+  private final Object[] upvalues;
   private final boolean isInitializer;
+  // set on bound methods, passed as 'this' on every call
+  private final TInstance receiver;
+
+  public TFunction(Stmt.Function declaration, Object[] upvalues, boolean isInitializer) {
+    this(declaration, upvalues, isInitializer, null);
+  }
 
-  public TFunction(Stmt.Function declaration, Environment closure, boolean isInitializer) {
+  private TFunction(Stmt.Function declaration, Object[] upvalues, boolean isInitializer, TInstance receiver) {
     this.declaration = declaration;
-    this.closure = closure;
+    this.upvalues = upvalues;
     this.isInitializer = isInitializer;
+    this.receiver = receiver;
   }
 
+  @Override
   public TFunction bind(TInstance instance) {
-    Environment environment = new Environment(closure);
-    environment.define("this", instance);
-    return new TFunction(declaration, environment, isInitializer);
+    return new TFunction(declaration, upvalues, isInitializer, instance);
   }
 
   @Override
-  public Object call(Interpreter interpreter, List<Object> arguments) {
-    Environment environment = new Environment(closure);
-    for (int i = 0; i < declaration.params.size(); i++) {
-      environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+  public Object call(Interpreter interpreter, Object... arguments) {
+    return invoke(interpreter, receiver, arguments);
+  }
+
+  @Override
+  public Object call0(Interpreter interpreter) {
+    return run(interpreter, frame(interpreter, receiver), receiver);
+  }
+
+  @Override
+  public Object call1(Interpreter interpreter, Object first) {
+    Environment environment = frame(interpreter, receiver);
+    environment.define(0, first);
+    return run(interpreter, environment, receiver);
+  }
+
+  @Override
+  public Object call2(Interpreter interpreter, Object first, Object second) {
+    Environment environment = frame(interpreter, receiver);
+    environment.define(0, first);
+    environment.define(1, second);
+    return run(interpreter, environment, receiver);
+  }
+
+  @Override
+  public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+    Environment environment = frame(interpreter, receiver);
+    environment.define(0, first);
+    environment.define(1, second);
+    environment.define(2, third);
+    return run(interpreter, environment, receiver);
+  }
+
+  @Override
+  public Object invoke(Interpreter interpreter, TInstance instance, Object[] arguments) {
+    Environment environment = frame(interpreter, instance);
+    for (int i = 0; i < arguments.length; i++) {
+      environment.define(i, arguments[i]);
     }
+    return run(interpreter, environment, instance);
+  }
 
-    try {
-      interpreter.executeBlock(declaration.body, environment);
-    } catch (Return returnValue) {
-      return returnValue.value;
+  // frames come from the interpreter's frame stack, execute gives them back
+  private Environment frame(Interpreter interpreter, TInstance instance) {
+    Environment environment = interpreter.getFrames().push(upvalues, declaration.frameSize);
+    // methods keep the receiver in the slot after the parameters
+    if (instance != null) environment.define(declaration.params.size(), instance);
+    return environment;
+  }
+
+  // Runs the body once for TailCall, instance replaces the bound receiver
+  // when given. The result may be another tail call.
+  public Object enter(Interpreter interpreter, TInstance instance, Object[] arguments) {
+    if (instance == null) instance = receiver;
+    Environment environment = frame(interpreter, instance);
+    for (int i = 0; i < arguments.length; i++) {
+      environment.define(i, arguments[i]);
     }
+    return execute(interpreter, environment, instance);
+  }
+
+  private Object run(Interpreter interpreter, Environment environment, TInstance instance) {
+    return TailCall.complete(interpreter, execute(interpreter, environment, instance));
+  }
 
-    if (isInitializer) return closure.getAt(0, "this");
-    return null;
+  private Object execute(Interpreter interpreter, Environment environment, TInstance instance) {
+    try {
+      if (declaration.boxedSlots != null) environment.box(declaration.boxedSlots);
+      CompiledCode code = isInitializer ? null : interpreter.compiled(declaration);
+      if (code != null) return code.execute(environment);
+
+      Object completion = interpreter.executeBlock(declaration.body, environment);
+      // an initializer returns without a value, and gives its receiver
+      if (isInitializer) return instance;
+      if (completion != Completion.NORMAL) return completion;
+      return null;
+    } finally {
+      interpreter.getFrames().pop();
+    }
   }
 
   @Override
@@ -2,27 +2,29 @@ package com.lang.elox.representation.runtime.instances;
 
 import com.lang.elox.errors.RuntimeError;
 import com.lang.elox.core.scanning.Token;
+import com.lang.elox.representation.interfaces.IMethod;
 import com.lang.elox.representation.runtime.classes.TObjectClass;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Objects;
 
 public final class TInstance extends TObjectClass {
   private TClass clazz;
-  private final Map<String, Object> fields = new HashMap<>();
+  private Shape shape;
+  private Object[] values;
 
   public TInstance(TClass clazz) {
     this.clazz = clazz;
+    this.shape = clazz.getShape();
+    this.values = new Object[shape.expectedSize()];
   }
 
   @Override
   public Object get(Token name) {
-    if (fields.containsKey(name.lexeme)) {
-      return fields.get(name.lexeme);
-    }
+    int slot = shape.slotOf(name.lexeme);
+    if (slot != -1) return values[slot];
 
-    TFunction method = clazz.findMethod(this, name.lexeme);
+    IMethod method = clazz.findMethod(this, name.lexeme);
     if (method != null) return method;
 
     throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
@@ -30,7 +32,11 @@ public final class TInstance extends TObjectClass {
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(fields);
+    int hash = 0;
+    for (int i = 0; i < shape.size(); i++) {
+      hash += shape.nameAt(i).hashCode() ^ Objects.hashCode(values[i]);
+    }
+    return hash;
   }
 
   @Override
@@ -39,11 +45,37 @@ public final class TInstance extends TObjectClass {
     if (o == null) return false;
     if (o.getClass() != this.getClass()) return false;
     TInstance instance = (TInstance) o;
-    return this.fields.equals(instance.fields) && this.clazz.equals(instance.clazz);
+    if (!this.clazz.equals(instance.clazz) || this.shape.size() != instance.shape.size()) return false;
+
+    // the same fields may have been added in a different order
+    for (int i = 0; i < shape.size(); i++) {
+      int slot = instance.shape.slotOf(shape.nameAt(i));
+      if (slot == -1 || !Objects.equals(values[i], instance.values[slot])) return false;
+    }
+    return true;
   }
 
   public void set(Token name, Object value) {
-    fields.put(name.lexeme, value);
+    int slot = shape.slotOf(name.lexeme);
+    if (slot == -1) {
+      shape = shape.with(name.lexeme);
+      slot = shape.size() - 1;
+      if (slot == values.length) values = Arrays.copyOf(values, Math.max(shape.expectedSize(), slot + 1));
+    }
+    values[slot] = value;
+  }
+
+  public Shape getShape() {
+    return shape;
+  }
+
+  // slot must come from this instance's current shape
+  public Object getField(int slot) {
+    return values[slot];
+  }
+
+  public void setField(int slot, Object value) {
+    values[slot] = value;
   }
 
   public TClass getClazz() {
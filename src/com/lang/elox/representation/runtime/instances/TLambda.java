@@ -1,37 +1,109 @@
 package com.lang.elox.representation.runtime.instances;
 
 import com.lang.elox.core.Environment;
+import com.lang.elox.core.jit.CompiledCode;
 import com.lang.elox.representation.parsetime.Expr;
 import com.lang.elox.representation.interfaces.ICallable;
+import com.lang.elox.core.interpreting.Completion;
 import com.lang.elox.core.interpreting.Interpreter;
-import com.lang.elox.errors.Return;
+import com.lang.elox.core.interpreting.TailCall;
 import com.lang.elox.representation.runtime.classes.TLambdaClass;
 
-import java.util.List;
-
 public final class TLambda extends TLambdaClass implements ICallable {
   private final Expr.Lambda declaration;
-  private final Environment closure;
+  // the variables it captured, see Environment.capture
+  private final Object[] upvalues;
 
-  public TLambda(Expr.Lambda declaration, Environment closure) {
+  private TLambda(Expr.Lambda declaration, Object[] upvalues) {
     this.declaration = declaration;
-    this.closure = closure;
+    this.upvalues = upvalues;
+  }
+
+  // The lambda the declaration evaluates to in environment. A lambda
+  // capturing nothing is nothing but its declaration, so it is made once per
+  // site; one that captures is made once per frame it is evaluated in, as
+  // it captures the same values there each time (see Environment.closure).
+  public static TLambda of(Expr.Lambda declaration, Environment environment) {
+    if (declaration.captureDepths != null) {
+      TLambda lambda = (TLambda) environment.closure(declaration);
+      if (lambda == null) {
+        lambda = new TLambda(declaration, environment.capture(declaration.captureDepths, declaration.captureSlots));
+        environment.cacheClosure(declaration, lambda);
+      }
+      return lambda;
+    }
+
+    if (declaration.instance == null) declaration.instance = new TLambda(declaration, null);
+    return declaration.instance;
   }
 
   @Override
-  public Object call(Interpreter interpreter, List<Object> arguments) {
-    Environment environment = new Environment(closure);
-    for (int i = 0; i < declaration.params.size(); i++) {
-      environment.define(declaration.params.get(i).lexeme, arguments.get(i));
+  public Object call(Interpreter interpreter, Object... arguments) {
+    Environment environment = frame(interpreter);
+    for (int i = 0; i < arguments.length; i++) {
+      environment.define(i, arguments[i]);
     }
+    return run(interpreter, environment);
+  }
 
-    try {
-      interpreter.executeBlock(declaration.body, environment);
-    } catch (Return exception) {
-      return exception.value;
+  @Override
+  public Object call0(Interpreter interpreter) {
+    return run(interpreter, frame(interpreter));
+  }
+
+  @Override
+  public Object call1(Interpreter interpreter, Object first) {
+    Environment environment = frame(interpreter);
+    environment.define(0, first);
+    return run(interpreter, environment);
+  }
+
+  @Override
+  public Object call2(Interpreter interpreter, Object first, Object second) {
+    Environment environment = frame(interpreter);
+    environment.define(0, first);
+    environment.define(1, second);
+    return run(interpreter, environment);
+  }
+
+  @Override
+  public Object call3(Interpreter interpreter, Object first, Object second, Object third) {
+    Environment environment = frame(interpreter);
+    environment.define(0, first);
+    environment.define(1, second);
+    environment.define(2, third);
+    return run(interpreter, environment);
+  }
+
+  // see TFunction.frame
+  private Environment frame(Interpreter interpreter) {
+    return interpreter.getFrames().push(upvalues, declaration.frameSize);
+  }
+
+  // runs the body once for TailCall, the result may be another tail call
+  public Object enter(Interpreter interpreter, Object[] arguments) {
+    Environment environment = frame(interpreter);
+    for (int i = 0; i < arguments.length; i++) {
+      environment.define(i, arguments[i]);
     }
+    return execute(interpreter, environment);
+  }
+
+  private Object run(Interpreter interpreter, Environment environment) {
+    return TailCall.complete(interpreter, execute(interpreter, environment));
+  }
 
-    return null;
+  private Object execute(Interpreter interpreter, Environment environment) {
+    try {
+      if (declaration.boxedSlots != null) environment.box(declaration.boxedSlots);
+      CompiledCode code = interpreter.compiled(declaration);
+      if (code != null) return code.execute(environment);
+
+      Object completion = interpreter.executeBlock(declaration.body, environment);
+      return completion != Completion.NORMAL ? completion : null;
+    } finally {
+      interpreter.getFrames().pop();
+    }
   }
 
   @Override
@@ -2,13 +2,21 @@ package com.lang.elox.representation.runtime.instances;
 
 import com.lang.elox.core.Environment;
 
+import java.util.List;
+
 public final class TModule  {
   private String name;
   private Environment environment;
+  private List<String> locals;
 
-  public TModule(String name, Environment environment) {
+  public TModule(String name, Environment environment, List<String> locals) {
     this.name = name;
     this.environment = environment;
+    this.locals = locals;
+  }
+
+  public List<String> getLocals() {
+    return locals;
   }
 
   public Environment getEnvironment() {
@@ -6,7 +6,7 @@ import com.lang.elox.core.scanning.Token;
 import com.lang.elox.representation.runtime.classes.TStringClass;
 
 public final class TString extends TStringClass {
-  private String string;
+  private final String string;
 
   public TString(char c) {
     this.string = "" + c;
@@ -10,7 +10,6 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.List;
-import java.util.Map;
 
 public final class Importer {
   private final Interpreter interpreter;
@@ -21,11 +20,12 @@ public final class Importer {
     this.reporter = reporter;
   }
 
-  public TModule buildModule(String filename, List<Stmt> statements) {
+  public TModule buildModule(Stmt.Import stmt) {
     try {
-      Environment environment = new Environment();
-      interpreter.executeBlock(statements, environment);
-      return new TModule(filename, environment);
+      Environment environment = new Environment(null, stmt.locals.size());
+      if (stmt.boxedSlots != null) environment.box(stmt.boxedSlots);
+      interpreter.executeBlock(stmt.statements, environment);
+      return new TModule((String) stmt.name.literal, environment, stmt.locals);
     } catch (Exception e) {
       reporter.error(e.getMessage());
     }
@@ -34,7 +34,7 @@ public final class Importer {
   }
 
   public void importAll(TModule module, Environment environment) {
-    importToEnv(module.getEnvironment(), environment);
+    importToEnv(module, environment);
   }
 
   public void importModule(TModule module, Environment environment) {
@@ -45,9 +45,10 @@ public final class Importer {
     return new String(Files.readAllBytes(Paths.get(filename)), StandardCharsets.UTF_8);
   }
 
-  private void importToEnv(Environment from, Environment to) {
-    for (Map.Entry<String, Object> entry : from.getValues().entrySet()) {
-      to.define(entry.getKey(), entry.getValue());
+  private void importToEnv(TModule module, Environment to) {
+    List<String> locals = module.getLocals();
+    for (int i = 0; i < locals.size(); i++) {
+      to.define(locals.get(i), module.getEnvironment().valueAt(i));
     }
   }
 }
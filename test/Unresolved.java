@@ -0,0 +1,59 @@
+import com.lang.elox.core.interpreting.Interpreter;
+import com.lang.elox.core.interpreting.Resolver;
+import com.lang.elox.core.interpreting.Verifier;
+import com.lang.elox.core.parsing.Parser;
+import com.lang.elox.core.scanning.Scanner;
+import com.lang.elox.representation.parsetime.Stmt;
+import com.lang.elox.utils.ErrorReporter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+// Checks that Verifier reports the variables Resolver left unresolved and
+// nothing once they are resolved. Resolver binds every variable a script
+// can contain, so the tree verified first skips resolution on purpose.
+// Exits with 1 on a mismatch.
+//
+// usage: java -cp <classes> test/Unresolved.java
+
+public final class Unresolved {
+  private static final String SOURCE =
+      "var a = 1;\n" +
+      "{\n" +
+      "  var b = a;\n" +
+      "  b = 2;\n" +
+      "}\n";
+
+  public static void main(String[] args) {
+    String unresolved = verify(false);
+    check(unresolved, "[line 3] Error at 'a': Variable was not resolved.\n" +
+        "[line 4] Error at 'b': Variable was not resolved.\n");
+    check(verify(true), "");
+  }
+
+  // the errors Verifier reports on SOURCE
+  private static String verify(boolean resolve) {
+    ErrorReporter reporter = new ErrorReporter();
+    Parser.getValidator().setFile("");
+    List<Stmt> statements = new Parser(new Scanner(SOURCE, reporter).scanTokens(), reporter).parse();
+    if (resolve) new Resolver(new Interpreter(reporter), reporter).resolve(statements);
+
+    PrintStream err = System.err;
+    ByteArrayOutputStream errors = new ByteArrayOutputStream();
+    System.setErr(new PrintStream(errors, true));
+    try {
+      new Verifier(reporter).verify(statements);
+    } finally {
+      System.setErr(err);
+      Parser.getValidator().clear();
+    }
+    return errors.toString();
+  }
+
+  private static void check(String actual, String expected) {
+    if (actual.equals(expected)) return;
+    System.err.print("expected:\n" + expected + "got:\n" + actual);
+    System.exit(1);
+  }
+}
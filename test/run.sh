@@ -0,0 +1,53 @@
+#!/usr/bin/env bash
+# Runs every script under test/ on each engine and optimization level and
+# compares the output and exit status with those of the default
+# tree-walking interpreter at -O1. Builds src into a temporary directory.
+#
+# usage: test/run.sh [engine options...]
+#   with options only that configuration is compared, otherwise all are
+#   and Unresolved.java checks the diagnostics of --verify-resolution
+
+cd "$(dirname "$0")" || exit 1
+classes=$(mktemp -d)
+trap 'rm -rf "$classes"' EXIT
+javac -nowarn -d "$classes" $(find ../src -name '*.java') || exit 1
+
+if [ $# -gt 0 ]; then
+  configs=("$*")
+else
+  configs=(
+    "-O0"
+    "--verify-resolution"
+    "--engine=vm -O1" "--engine=vm -O0"
+    "--engine=nodes -O1" "--engine=nodes -O0"
+    "--jit-call-threshold=1 --jit-loop-threshold=1 -O1"
+    "--jit-call-threshold=1 --jit-loop-threshold=1 -O0"
+  )
+fi
+
+run() {
+  local script=$1; shift
+  (cd "$(dirname "$script")" && java -Xss8m -cp "$classes" com.lang.elox.Elox "$@" "$(basename "$script")" 2>&1
+   echo "exit $?")
+}
+
+failed=0
+for script in $(find . -name '*.elox' | sort); do
+  expected=$(run "$script" -O1)
+  for config in "${configs[@]}"; do
+    actual=$(run "$script" $config)
+    [ "$actual" == "$expected" ] && continue
+
+    failed=$((failed + 1))
+    echo "FAIL [$config] $script"
+    diff <(echo "$expected") <(echo "$actual") | head -10 | sed 's/^/  /'
+  done
+done
+
+if [ $# -eq 0 ] && ! java -cp "$classes" Unresolved.java; then
+  failed=$((failed + 1))
+  echo "FAIL Unresolved.java"
+fi
+
+echo "$failed failed"
+[ $failed -eq 0 ]